@@ -0,0 +1,61 @@
+package com.bankgood.bank.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds the Hikari pools behind ShardingConfig and ReplicaConfig, all with
+ * the spring.datasource credentials and hikari settings.
+ */
+final class DataSourcePools {
+
+    private DataSourcePools() {
+    }
+
+    static HikariDataSource create(DataSourceProperties properties, Environment environment, String url,
+                                   String poolName) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(poolName);
+        return pool;
+    }
+
+    /**
+     * The primary itself, or the primary and its replicas behind a
+     * ReplicaRoutingDataSource if any are configured for this shard:
+     * bank.replicas.urls for shard 0, bank.replicas.shard-N.urls for the others.
+     */
+    static DataSource withReplicas(DataSourceProperties properties, Environment environment,
+                                   HikariDataSource primary, int shard) {
+        String key = shard == 0 ? "bank.replicas.urls" : "bank.replicas.shard-" + shard + ".urls";
+        List<String> urls = Arrays.stream(environment.getProperty(key, String[].class, new String[0]))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        if (urls.isEmpty()) {
+            return primary;
+        }
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (int replica = 0; replica < urls.size(); replica++) {
+            HikariDataSource pool = create(properties, environment, urls.get(replica),
+                    primary.getPoolName() + "-replica-" + replica);
+            pool.setReadOnly(true);
+            replicas.add(pool);
+        }
+        long maxLagMs = environment.getProperty("bank.replicas.max-lag-ms", Long.class, 1000L);
+        return new ReplicaRoutingDataSource.Lazy(new ReplicaRoutingDataSource(primary, replicas, maxLagMs));
+    }
+}
@@ -0,0 +1,36 @@
+package com.bankgood.bank.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Serves query endpoints from read replicas.
+ *
+ * Enabled by bank.replicas.urls, a comma-separated list of JDBC URLs of
+ * replicas of spring.datasource. With sharding, ShardingConfig builds the
+ * replicas instead, taking those of shard N from bank.replicas.shard-N.urls.
+ *
+ * Only read-only transactions of GET requests (ReplicaReadFilter) use a
+ * replica, and only one within bank.replicas.max-lag-ms of its primary.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("!'${bank.replicas.urls:}'.isEmpty() and '${bank.sharding.urls:}'.isEmpty()")
+public class ReplicaConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment) {
+        DataSource dataSource = DataSourcePools.withReplicas(properties, environment,
+                DataSourcePools.create(properties, environment, properties.determineUrl(), "bank-primary"), 0);
+        log.info("Routing read-only queries to read replicas of {}", properties.determineUrl());
+        return dataSource;
+    }
+}
@@ -0,0 +1,74 @@
+package com.bankgood.bank.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets GET and HEAD requests read from replicas (see ReadPreference).
+ *
+ * Read-your-writes: when sticky-ms is set, a client that identifies itself
+ * with the X-Client-Id header reads from the primary for sticky-ms after
+ * each of its writes. The window is tracked per pod, so it holds when the
+ * client's requests reach the same pod.
+ */
+@Component
+public class ReplicaReadFilter extends OncePerRequestFilter {
+
+    public static final String CLIENT_HEADER = "X-Client-Id";
+
+    private static final int MAX_TRACKED_CLIENTS = 100_000;
+
+    @Value("${bank.replicas.sticky-ms:0}")
+    private long stickyMs;
+
+    // Client id -> time until which its reads go to the primary
+    private final Map<String, Long> primaryUntil = new ConcurrentHashMap<>();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = stickyMs > 0 ? request.getHeader(CLIENT_HEADER) : null;
+        boolean query = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+
+        if (!query) {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                if (client != null) {
+                    recordWrite(client);
+                }
+            }
+            return;
+        }
+
+        Long until = client != null ? primaryUntil.get(client) : null;
+        if (until != null && until > System.currentTimeMillis()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        ReadPreference.allowReplica();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadPreference.clear();
+        }
+    }
+
+    private void recordWrite(String client) {
+        long now = System.currentTimeMillis();
+        if (primaryUntil.size() >= MAX_TRACKED_CLIENTS) {
+            primaryUntil.values().removeIf(until -> until <= now);
+        }
+        primaryUntil.put(client, now + stickyMs);
+    }
+}
@@ -0,0 +1,83 @@
+package com.bankgood.bank.config;
+
+import com.bankgood.bank.model.UuidV7;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * The shard (database) and account bucket the current thread is working on.
+ *
+ * ShardRoutingDataSource reads the shard when a connection is opened, so it
+ * must be set before a transaction starts. The bucket is stamped into the low
+ * bits of new ids, which lets rows created for an account be routed back to
+ * the account's shard by id alone.
+ */
+public final class ShardContext {
+
+    public static final int BUCKETS = 1024;
+
+    private static final long BUCKET_MASK = BUCKETS - 1;
+
+    // {shard, bucket}; absent means shard 0 and no bucket
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static int shard() {
+        int[] current = CURRENT.get();
+        return current != null ? current[0] : 0;
+    }
+
+    /**
+     * The bucket of the account being worked on, or -1 outside account context.
+     */
+    public static int bucket() {
+        int[] current = CURRENT.get();
+        return current != null ? current[1] : -1;
+    }
+
+    public static <T> T call(int shard, int bucket, Supplier<T> action) {
+        int[] previous = CURRENT.get();
+        CURRENT.set(new int[] { shard, bucket });
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    // ===================== IDS =====================
+
+    /**
+     * A new {@link UuidV7} carrying the current bucket, if there is one.
+     */
+    public static UUID newId() {
+        return withBucket(UuidV7.generate());
+    }
+
+    /**
+     * {@link UuidV7#fromName} carrying the current bucket, if there is one.
+     */
+    public static UUID nameId(long epochMillis, byte[] name) {
+        return withBucket(UuidV7.fromName(epochMillis, name));
+    }
+
+    private static UUID withBucket(UUID id) {
+        int bucket = bucket();
+        if (bucket < 0) {
+            return id;
+        }
+        return new UUID(id.getMostSignificantBits(), (id.getLeastSignificantBits() & ~BUCKET_MASK) | bucket);
+    }
+
+    // Meaningful only for ids created by newId in account context; others give a random bucket
+    public static int bucketOf(UUID id) {
+        return (int) (id.getLeastSignificantBits() & BUCKET_MASK);
+    }
+}
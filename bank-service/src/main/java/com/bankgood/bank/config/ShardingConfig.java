@@ -0,0 +1,110 @@
+package com.bankgood.bank.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.DelayedDropRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads accounts over several Postgres databases (shards).
+ *
+ * Enabled by bank.sharding.urls, a comma-separated list of JDBC URLs for the
+ * shards after the first; shard 0 is spring.datasource. Every shard gets its
+ * own Hikari pool with the spring.datasource credentials and hikari settings,
+ * plus its read replicas if configured (see ReplicaConfig), behind one
+ * ShardRoutingDataSource. Hibernate's schema management (ddl-auto)
+ * is repeated on every shard once it has run on shard 0.
+ *
+ * Without the property the application uses the single auto-configured
+ * DataSource and everything lives on shard 0.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "bank.sharding.urls")
+public class ShardingConfig {
+
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(DataSourceProperties properties, Environment environment,
+                                             @Value("${bank.sharding.urls}") List<String> urls) {
+        List<String> shardUrls = new ArrayList<>();
+        shardUrls.add(properties.determineUrl());
+        urls.stream().map(String::trim).filter(url -> !url.isEmpty()).forEach(shardUrls::add);
+
+        List<DataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < shardUrls.size(); shard++) {
+            HikariDataSource pool = DataSourcePools.create(properties, environment, shardUrls.get(shard),
+                    "bank-shard-" + shard);
+            shards.add(DataSourcePools.withReplicas(properties, environment, pool, shard));
+        }
+        log.info("Sharding accounts over {} databases", shards.size());
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(ShardRoutingDataSource dataSource) {
+        Integrator integrator = new ShardSchemaIntegrator(dataSource.getShards().size());
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> List.of(integrator));
+    }
+
+    /**
+     * Runs the configured schema action against shards 1..n after Hibernate
+     * has run it against shard 0, using the same mapping metadata.
+     */
+    private static final class ShardSchemaIntegrator implements Integrator {
+
+        // create-drop drops shard 0 only; the other shards keep their tables
+        private static final DelayedDropRegistry IGNORE_DELAYED_DROP = action -> { };
+
+        private final int shardCount;
+
+        private ShardSchemaIntegrator(int shardCount) {
+            this.shardCount = shardCount;
+        }
+
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                              SessionFactoryImplementor sessionFactory) {
+            sessionFactory.addObserver(new SessionFactoryObserver() {
+                @Override
+                public void sessionFactoryCreated(SessionFactory factory) {
+                    for (int shard = 1; shard < shardCount; shard++) {
+                        ShardContext.call(shard, -1, () -> {
+                            SchemaManagementToolCoordinator.process(metadata, sessionFactory.getServiceRegistry(),
+                                    sessionFactory.getProperties(), IGNORE_DELAYED_DROP);
+                            return null;
+                        });
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                 SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
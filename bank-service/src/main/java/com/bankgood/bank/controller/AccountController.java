@@ -1,16 +1,31 @@
 package com.bankgood.bank.controller;
 
 import com.bankgood.bank.event.AccountDTO;
+import com.bankgood.bank.event.AccountImportResult;
+import com.bankgood.bank.event.AccountPage;
+import com.bankgood.bank.event.AccountView;
+import com.bankgood.bank.event.BulkBalanceResponse;
+import com.bankgood.bank.event.LedgerBalance;
 import com.bankgood.bank.event.ReserveFundsResult;
+import com.bankgood.bank.service.AccountImportService;
+import com.bankgood.bank.service.AccountReadModel;
 import com.bankgood.bank.service.AccountService;
+import com.bankgood.bank.service.LedgerService;
+import com.bankgood.bank.service.ShardRouter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Slf4j
@@ -20,35 +35,92 @@ import java.util.List;
 public class AccountController {
 
     private final AccountService accountService;
+    private final AccountReadModel accountReadModel;
+    private final AccountImportService accountImportService;
+    private final LedgerService ledgerService;
+    private final ShardRouter shardRouter;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BULK_BALANCES = 5000;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
     @PostMapping
     public ResponseEntity<AccountDTO> createAccount(@Valid @RequestBody AccountDTO dto) {
         log.info("API CALL: Create account {}", dto);
-        AccountDTO result = accountService.createAccount(dto);
+        AccountDTO result = shardRouter.forAccount(dto.getAccountNumber(),
+                () -> accountService.createAccount(dto));
         log.info("API RESULT: Created account {}", result);
         return ResponseEntity.status(HttpStatus.CREATED).body(result);
     }
     
+    @PostMapping(value = "/import", consumes = { "text/csv", "application/x-ndjson" })
+    public ResponseEntity<AccountImportResult> importAccounts(
+            @RequestHeader("Content-Type") MediaType contentType,
+            InputStream body) {
+        AccountImportService.Format format = NDJSON.isCompatibleWith(contentType)
+                ? AccountImportService.Format.NDJSON
+                : AccountImportService.Format.CSV;
+        log.info("API CALL: Import accounts ({})", format);
+        AccountImportResult result = accountImportService.importAccounts(body, format);
+        log.info("API RESULT: Imported {} accounts", result.getImported());
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping("/{accountNumber}")
     public ResponseEntity<AccountDTO> getAccountByNumber(@PathVariable String accountNumber) {
         log.info("API CALL: Get account with account number {}", accountNumber);
-        AccountDTO result = accountService.getAccountByNumber(accountNumber);
-        log.info("API RESULT: Get account response {}", result);
-        return ResponseEntity.ok(result);
+        AccountView view = accountReadModel.getAccount(accountNumber);
+        log.info("API RESULT: Get account response {}", view.getAccount());
+        return ResponseEntity.ok()
+                .header("X-Account-Version", String.valueOf(view.getVersion()))
+                .header("X-Read-Model-Watermark", String.valueOf(view.getWatermark()))
+                .body(view.getAccount());
     }
 
     @GetMapping
-    public ResponseEntity<List<AccountDTO>> getAllAccounts() {
-        log.info("API CALL: Get all accounts");
-        List<AccountDTO> result = accountService.getAllAccounts();
-        log.info("API RESULT: Returned {} accounts", result.size());
+    public ResponseEntity<AccountPage> getAccounts(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        log.info("API CALL: Get accounts after {} (limit {})", after, limit);
+        long watermark = accountReadModel.getWatermark();
+        AccountPage result = accountReadModel.getAccountPage(after, limit);
+        log.info("API RESULT: Returned {} accounts", result.getAccounts().size());
+        return ResponseEntity.ok()
+                .header("X-Read-Model-Watermark", String.valueOf(watermark))
+                .body(result);
+    }
+
+    @PostMapping("/balances")
+    public ResponseEntity<BulkBalanceResponse> getBalances(@RequestBody List<String> accountNumbers) {
+        if (accountNumbers == null || accountNumbers.isEmpty() || accountNumbers.size() > MAX_BULK_BALANCES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Between 1 and " + MAX_BULK_BALANCES + " account numbers are required");
+        }
+        BulkBalanceResponse result = accountReadModel.getBalances(accountNumbers);
+        log.info("API CALL: Bulk balance inquiry for {} accounts ({} missing)",
+                accountNumbers.size(), result.getMissing().size());
         return ResponseEntity.ok(result);
     }
 
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAccounts() {
+        log.info("API CALL: Export all accounts");
+        StreamingResponseBody body = out -> {
+            long count = shardRouter.gather(() -> accountService.exportAccounts(out)).stream()
+                    .mapToLong(Long::longValue).sum();
+            log.info("API RESULT: Exported {} accounts", count);
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
     @PutMapping("/{accountNumber}")
     public ResponseEntity<AccountDTO> updateAccount(@PathVariable String accountNumber, @Valid @RequestBody AccountDTO dto) {
         log.info("API CALL: Update account {} with data {}", accountNumber, dto);
-        AccountDTO result = accountService.updateAccount(accountNumber, dto);
+        AccountDTO result = shardRouter.forAccount(accountNumber,
+                () -> accountService.updateAccount(accountNumber, dto));
         log.info("API RESULT: Updated account {}", result);
         return ResponseEntity.ok(result);
     }
@@ -56,17 +128,27 @@ public class AccountController {
     @DeleteMapping("/{accountNumber}")
     public ResponseEntity<Void> deleteAccount(@PathVariable String accountNumber) {
         log.info("API CALL: Delete account {}", accountNumber);
-        accountService.deleteAccount(accountNumber);
+        shardRouter.forAccount(accountNumber, () -> accountService.deleteAccount(accountNumber));
         log.info("API RESULT: Deleted account {}", accountNumber);
         return ResponseEntity.noContent().build();
     }
 
+    // Balance as recorded by the ledger at the given time
+    @GetMapping("/{accountNumber}/balance-at")
+    public ResponseEntity<LedgerBalance> getBalanceAt(
+            @PathVariable String accountNumber,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return ResponseEntity.ok(shardRouter.forAccount(accountNumber,
+                () -> ledgerService.getBalanceAt(accountNumber, at)));
+    }
+
     @PostMapping("/{accountNumber}/deposit")
     public ResponseEntity<AccountDTO> deposit(
             @PathVariable String accountNumber,
             @RequestParam BigDecimal amount) {
         log.info("API CALL: Deposit {} to account {}", amount, accountNumber);
-        AccountDTO result = accountService.deposit(accountNumber, amount);
+        AccountDTO result = shardRouter.forAccount(accountNumber,
+                () -> accountService.deposit(accountNumber, amount));
         log.info("API RESULT: After deposit: {}", result);
         return ResponseEntity.ok(result);
     }
@@ -76,7 +158,8 @@ public class AccountController {
             @PathVariable String accountNumber,
             @RequestParam BigDecimal amount) {
         log.info("API CALL: Reserve {} on account {}", amount, accountNumber);
-        ReserveFundsResult result = accountService.reserveFunds(accountNumber, amount);
+        ReserveFundsResult result = shardRouter.forAccount(accountNumber,
+                () -> accountService.reserveFunds(accountNumber, amount));
         log.info("API RESULT: After reserve: {}", result);
         return ResponseEntity.ok(result);
     }
@@ -86,7 +169,8 @@ public class AccountController {
             @PathVariable String accountNumber,
             @RequestParam BigDecimal amount) {
         log.info("API CALL: Commit {} reserved funds on account {}", amount, accountNumber);
-        AccountDTO result = accountService.commitReservedFunds(accountNumber, amount);
+        AccountDTO result = shardRouter.forAccount(accountNumber,
+                () -> accountService.commitReservedFunds(accountNumber, amount));
         log.info("API RESULT: After commit: {}", result);
         return ResponseEntity.ok(result);
     }
@@ -96,7 +180,8 @@ public class AccountController {
             @PathVariable String accountNumber,
             @RequestParam BigDecimal amount) {
         log.info("API CALL: Release {} reserved funds on account {}", amount, accountNumber);
-        AccountDTO result = accountService.releaseReservedFunds(accountNumber, amount);
+        AccountDTO result = shardRouter.forAccount(accountNumber,
+                () -> accountService.releaseReservedFunds(accountNumber, amount));
         log.info("API RESULT: After release: {}", result);
         return ResponseEntity.ok(result);
     }
@@ -0,0 +1,44 @@
+package com.bankgood.bank.controller;
+
+import com.bankgood.bank.event.ArchiveRunResult;
+import com.bankgood.bank.event.TransactionHistoryEntry;
+import com.bankgood.bank.service.TransactionArchiveService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@RestController
+@RequestMapping("/bank/archive")
+@RequiredArgsConstructor
+public class ArchiveController {
+
+    private final TransactionArchiveService archiveService;
+
+    @PostMapping("/run")
+    public ResponseEntity<ArchiveRunResult> run() {
+        log.info("API CALL: Archive settled transactions");
+        return ResponseEntity.ok(archiveService.archive());
+    }
+
+    // from is inclusive, to exclusive; both optional
+    @GetMapping("/account/{accountNumber}")
+    public ResponseEntity<List<TransactionHistoryEntry>> getHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(archiveService.getHistory(accountNumber, from, to, limit));
+    }
+
+    @GetMapping("/transaction/{id}")
+    public ResponseEntity<TransactionHistoryEntry> getTransaction(@PathVariable UUID id) {
+        return ResponseEntity.ok(archiveService.getTransaction(id));
+    }
+}
@@ -0,0 +1,38 @@
+package com.bankgood.bank.controller;
+
+import com.bankgood.bank.event.EodRunReport;
+import com.bankgood.bank.service.EodService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@Slf4j
+@RestController
+@RequestMapping("/bank/eod")
+@RequiredArgsConstructor
+public class EodController {
+
+    private final EodService eodService;
+
+    // ===================== RUN =====================
+    // Starts (or resumes) the run for businessDate, yesterday by default; poll GET /runs/{businessDate} for progress
+    @PostMapping("/run")
+    public ResponseEntity<EodRunReport> run(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate businessDate) {
+        LocalDate date = businessDate != null ? businessDate : LocalDate.now().minusDays(1);
+        log.info("API CALL: Start end-of-day run for {}", date);
+        return ResponseEntity.accepted().body(eodService.start(date));
+    }
+
+    @GetMapping("/runs/{businessDate}")
+    public ResponseEntity<EodRunReport> getRun(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate businessDate) {
+        return eodService.getRun(businessDate)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
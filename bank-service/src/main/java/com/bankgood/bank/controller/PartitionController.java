@@ -0,0 +1,34 @@
+package com.bankgood.bank.controller;
+
+import com.bankgood.bank.event.PartitionInfo;
+import com.bankgood.bank.service.TransactionPartitionManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/bank/partitions")
+@RequiredArgsConstructor
+public class PartitionController {
+
+    private final TransactionPartitionManager partitionManager;
+
+    @GetMapping
+    public ResponseEntity<List<PartitionInfo>> getPartitions() {
+        return ResponseEntity.ok(partitionManager.getPartitions());
+    }
+
+    // Detached partitions stay in the database as standalone tables
+    @PostMapping("/detach")
+    public ResponseEntity<List<PartitionInfo>> detach(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before) {
+        log.info("API CALL: Detach transaction partitions before {}", before);
+        return ResponseEntity.ok(partitionManager.detachBefore(before));
+    }
+}
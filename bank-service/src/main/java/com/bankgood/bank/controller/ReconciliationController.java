@@ -0,0 +1,44 @@
+package com.bankgood.bank.controller;
+
+import com.bankgood.bank.event.ReconciliationReport;
+import com.bankgood.bank.model.ReconciliationBreak;
+import com.bankgood.bank.service.ReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/bank/reconciliation")
+@RequiredArgsConstructor
+public class ReconciliationController {
+
+    private final ReconciliationService reconciliationService;
+
+    // ===================== RUN =====================
+    // Continues from the last completed run unless full; poll GET /runs/{id} for the result
+    @PostMapping("/run")
+    public ResponseEntity<ReconciliationReport> run(@RequestParam(defaultValue = "false") boolean full) {
+        log.info("API CALL: Start {} reconciliation against clearing", full ? "full" : "incremental");
+        return ResponseEntity.accepted().body(reconciliationService.start(full));
+    }
+
+    @GetMapping("/runs/{id}")
+    public ResponseEntity<ReconciliationReport> getRun(@PathVariable Long id) {
+        return reconciliationService.getRun(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Pages by break id: pass the last id of one page as after for the next
+    @GetMapping("/runs/{id}/breaks")
+    public ResponseEntity<List<ReconciliationBreak>> getBreaks(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(reconciliationService.getBreaks(id, after, limit));
+    }
+}
@@ -0,0 +1,51 @@
+package com.bankgood.bank.controller;
+
+import com.bankgood.bank.event.ScheduledPaymentDTO;
+import com.bankgood.bank.service.ScheduledPaymentService;
+import com.bankgood.bank.service.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@RestController
+@RequestMapping("/bank/scheduled-payment")
+@RequiredArgsConstructor
+public class ScheduledPaymentController {
+
+    private final ScheduledPaymentService scheduledPaymentService;
+    private final ShardRouter shardRouter;
+
+    @PostMapping
+    public ResponseEntity<ScheduledPaymentDTO> create(@RequestBody ScheduledPaymentDTO dto) {
+        log.info("API CALL: Schedule payment {}", dto);
+        ScheduledPaymentDTO result = shardRouter.forAccount(dto.getFromAccountNumber(),
+                () -> scheduledPaymentService.create(dto));
+        log.info("API RESULT: Scheduled payment {} for {}", result.getId(), result.getNextExecutionAt());
+        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ScheduledPaymentDTO> get(@PathVariable UUID id) {
+        return ResponseEntity.ok(shardRouter.forId(id, () -> scheduledPaymentService.exists(id),
+                () -> scheduledPaymentService.get(id)));
+    }
+
+    @GetMapping("/account/{accountNumber}")
+    public ResponseEntity<List<ScheduledPaymentDTO>> getByAccount(@PathVariable String accountNumber) {
+        return ResponseEntity.ok(shardRouter.forAccount(accountNumber,
+                () -> scheduledPaymentService.getByAccount(accountNumber)));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<ScheduledPaymentDTO> cancel(@PathVariable UUID id) {
+        log.info("API CALL: Cancel scheduled payment {}", id);
+        return ResponseEntity.ok(shardRouter.forId(id, () -> scheduledPaymentService.exists(id),
+                () -> scheduledPaymentService.cancel(id)));
+    }
+}
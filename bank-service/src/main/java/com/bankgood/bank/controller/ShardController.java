@@ -0,0 +1,38 @@
+package com.bankgood.bank.controller;
+
+import com.bankgood.bank.event.BucketMove;
+import com.bankgood.bank.event.ShardInfo;
+import com.bankgood.bank.service.ShardRebalancer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/bank/shards")
+@RequiredArgsConstructor
+public class ShardController {
+
+    private final ShardRebalancer shardRebalancer;
+
+    @GetMapping
+    public ResponseEntity<List<ShardInfo>> getShards() {
+        return ResponseEntity.ok(shardRebalancer.getShards());
+    }
+
+    // Requests for the bucket's accounts wait while it moves
+    @PostMapping("/buckets/{bucket}/move")
+    public ResponseEntity<BucketMove> moveBucket(@PathVariable int bucket, @RequestParam int to) {
+        log.info("API CALL: Move bucket {} to shard {}", bucket, to);
+        return ResponseEntity.ok(shardRebalancer.moveBucket(bucket, to));
+    }
+
+    @PostMapping("/rebalance")
+    public ResponseEntity<List<BucketMove>> rebalance(@RequestParam(defaultValue = "16") int maxMoves) {
+        log.info("API CALL: Rebalance shards, at most {} moves", maxMoves);
+        return ResponseEntity.ok(shardRebalancer.rebalance(maxMoves));
+    }
+}
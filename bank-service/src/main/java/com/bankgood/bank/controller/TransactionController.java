@@ -1,13 +1,22 @@
 package com.bankgood.bank.controller;
 
+import com.bankgood.bank.event.BulkPaymentResult;
 import com.bankgood.bank.event.IncomingTransactionEvent;
 import com.bankgood.bank.event.OutgoingTransactionEvent;
 import com.bankgood.bank.event.TransactionResponseEvent;
+import com.bankgood.bank.model.TransactionStatus;
+import com.bankgood.bank.service.BulkPaymentService;
+import com.bankgood.bank.service.OutgoingTransactionBatcher;
+import com.bankgood.bank.service.ShardRouter;
 import com.bankgood.bank.service.TransactionService;
+import com.bankgood.bank.service.TransactionStatusNotifier;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -17,12 +26,18 @@ import java.util.UUID;
 public class TransactionController {
 
     private final TransactionService service;
+    private final TransactionStatusNotifier statusNotifier;
+    private final BulkPaymentService bulkPaymentService;
+    private final OutgoingTransactionBatcher outgoingBatcher;
+    private final ShardRouter shardRouter;
+
+    private static final long MAX_AWAIT_MS = 60_000;
 
     // ===================== OUTGOING =====================
     @PostMapping("/outgoing")
     public ResponseEntity<?> createOutgoing(@RequestBody OutgoingTransactionEvent event) {
         try {
-            service.createOutgoingTransaction(event);
+            outgoingBatcher.createOutgoingTransaction(event);
             return ResponseEntity.accepted().body(Map.of(
                     "message", "Transaction accepted for initiation",
                     "transactionId", event.getTransactionId()));
@@ -31,35 +46,64 @@ public class TransactionController {
         }
     }
 
+    // Body is parsed as a stream; see BulkPaymentService for the format
+    @PostMapping("/outgoing/bulk")
+    public ResponseEntity<BulkPaymentResult> createOutgoingBulk(
+            InputStream body,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return ResponseEntity.accepted().body(bulkPaymentService.submit(body, idempotencyKey));
+    }
+
     @GetMapping("/outgoing/{id}")
     public ResponseEntity<?> getOutgoing(@PathVariable UUID id) {
-        return service.getOutgoingTransaction(id);
+        return shardRouter.forId(id, () -> service.outgoingExists(id), () -> service.getOutgoingTransaction(id));
+    }
+
+    // Long-poll: returns as soon as the status leaves PENDING, or after timeoutMs
+    @GetMapping("/outgoing/{id}/await")
+    public DeferredResult<ResponseEntity<?>> awaitOutgoing(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "30000") long timeoutMs) {
+        return shardRouter.forId(id, () -> service.outgoingExists(id),
+                () -> statusNotifier.await(id, Math.max(1, Math.min(timeoutMs, MAX_AWAIT_MS))));
     }
 
     @DeleteMapping("/outgoing/{id}")
     public ResponseEntity<?> deleteOutgoing(@PathVariable UUID id) {
-        return service.deleteOutgoingTransaction(id);
+        return shardRouter.forId(id, () -> service.outgoingExists(id), () -> service.deleteOutgoingTransaction(id));
     }
 
     // ===================== INCOMING =====================
     @GetMapping("/incoming/{id}")
     public ResponseEntity<?> getIncoming(@PathVariable UUID id) {
-        return service.getIncomingTransaction(id);
+        return shardRouter.forId(id, () -> service.incomingExists(id), () -> service.getIncomingTransaction(id));
     }
 
     @DeleteMapping("/incoming/{id}")
     public ResponseEntity<?> deleteIncoming(@PathVariable UUID id) {
-        return service.deleteIncomingTransaction(id);
+        return shardRouter.forId(id, () -> service.incomingExists(id), () -> service.deleteIncomingTransaction(id));
+    }
+
+    // ===================== HISTORY =====================
+    @GetMapping("/account/{accountNumber}")
+    public ResponseEntity<?> getHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) List<TransactionStatus> status) {
+        return shardRouter.forAccount(accountNumber,
+                () -> service.getTransactionHistory(accountNumber, before, limit, status));
     }
 
     // ===================== TRANSACTION EVENTS =====================
     @PostMapping("/incoming")
     public void handleIncomingEvent(@RequestBody IncomingTransactionEvent event) {
-        service.handleIncomingTransaction(event);
+        shardRouter.forAccount(event.getToAccountNumber(), () -> service.handleIncomingTransaction(event));
     }
 
     @PostMapping("/outgoing/completed")
     public void handleCompletedEvent(@RequestBody TransactionResponseEvent event) {
-        service.handleCompletedTransaction(event);
+        shardRouter.forId(event.getTransactionId(), () -> service.outgoingExists(event.getTransactionId()),
+                () -> service.handleCompletedTransaction(event));
     }
 }
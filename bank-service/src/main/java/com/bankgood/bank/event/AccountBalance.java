@@ -0,0 +1,16 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class AccountBalance {
+    private String accountNumber;
+    private BigDecimal balance;
+    private BigDecimal reservedBalance;
+}
@@ -0,0 +1,19 @@
+package com.bankgood.bank.event;
+
+import com.bankgood.bank.model.Account;
+import lombok.*;
+
+/**
+ * Published by AccountService for every account mutation. Applied to the
+ * AccountReadModel after the surrounding transaction has committed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class AccountChangedEvent {
+    private String previousAccountNumber;
+    private Account account;
+    private boolean deleted;
+}
@@ -0,0 +1,14 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class AccountImportReject {
+    private long line;
+    private String accountNumber;
+    private String reason;
+}
@@ -0,0 +1,20 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class AccountImportResult {
+    private long rowsRead;
+    private long imported;
+    private long duplicates; // repeated in the file or already present in accounts
+    private long rejected;   // failed validation
+    private List<AccountImportReject> rejects = new ArrayList<>(); // capped, duplicates included
+    private long elapsedMs;
+}
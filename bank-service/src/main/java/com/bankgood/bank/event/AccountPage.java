@@ -0,0 +1,19 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One keyset page of accounts ordered by account number. Pass nextAfter as
+ * the "after" parameter to fetch the next page; it is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class AccountPage {
+    private List<AccountDTO> accounts;
+    private String nextAfter;
+}
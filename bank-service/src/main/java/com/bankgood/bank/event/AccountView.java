@@ -0,0 +1,20 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+/**
+ * Read-side snapshot of an account as served by the AccountReadModel.
+ * version is the entity @Version, watermark the read model sequence at which
+ * the snapshot was applied and loadedAtMillis when it was last confirmed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class AccountView {
+    private AccountDTO account;
+    private long version;
+    private long watermark;
+    private long loadedAtMillis;
+}
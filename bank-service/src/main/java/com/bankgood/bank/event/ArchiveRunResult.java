@@ -0,0 +1,19 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class ArchiveRunResult {
+    private LocalDateTime cutoff; // settled rows created before this were archived
+    private int segments;
+    private long outgoingArchived;
+    private long incomingArchived;
+    private long bytesWritten;
+    private long elapsedMs;
+}
@@ -0,0 +1,17 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class BucketMove {
+    private int bucket;
+    private int fromShard;
+    private int toShard;
+    private int accounts;
+    private long rowsCopied; // accounts, transactions, scheduled payments and ledger rows
+    private long elapsedMs;
+}
@@ -0,0 +1,20 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Result of a bulk balance inquiry. Account numbers that do not exist are
+ * listed in missing instead of failing the whole request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class BulkBalanceResponse {
+    private List<AccountBalance> balances;
+    private List<String> missing;
+    private long watermark;
+}
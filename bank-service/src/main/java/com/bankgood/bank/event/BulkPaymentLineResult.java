@@ -0,0 +1,18 @@
+package com.bankgood.bank.event;
+
+import com.bankgood.bank.model.TransactionStatus;
+import lombok.*;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class BulkPaymentLineResult {
+    private int line;
+    private UUID transactionId; // null when the line was rejected
+    private TransactionStatus status;
+    private String message;
+}
@@ -0,0 +1,21 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class BulkPaymentResult {
+    private UUID batchId;
+    private String fromAccountNumber;
+    private int accepted;
+    private int rejected;
+    private BigDecimal totalAmount;
+    private List<BulkPaymentLineResult> lines;
+}
@@ -0,0 +1,25 @@
+package com.bankgood.bank.event;
+
+import com.bankgood.bank.model.EodStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class EodRunReport {
+    private LocalDate businessDate;
+    private EodStatus status;
+    private int chunkCount;
+    private long chunksCompleted;
+    private long accountsProcessed; // totals are filled in when the run completes
+    private BigDecimal interestPosted;
+    private BigDecimal feesCharged;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
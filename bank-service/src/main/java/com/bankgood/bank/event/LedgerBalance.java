@@ -0,0 +1,19 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class LedgerBalance {
+    private String accountNumber;
+    private LocalDateTime at;
+    private BigDecimal balance;
+    private LocalDateTime checkpointAt; // null if no checkpoint precedes at
+    private long entriesScanned;
+}
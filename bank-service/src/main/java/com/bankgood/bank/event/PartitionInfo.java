@@ -0,0 +1,19 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class PartitionInfo {
+    private int shard;
+    private String table;
+    private String partition;
+    private LocalDateTime from; // inclusive, null for MINVALUE
+    private LocalDateTime to; // exclusive, null for MAXVALUE
+    private long estimatedRows;
+}
@@ -0,0 +1,27 @@
+package com.bankgood.bank.event;
+
+import com.bankgood.bank.model.ReconciliationStatus;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class ReconciliationReport {
+    private Long runId;
+    private ReconciliationStatus status;
+    private LocalDateTime fromTime; // null for a full run
+    private LocalDateTime toTime;
+    private long bankRows;          // counts are filled in when the run completes
+    private long clearingRows;
+    private long matched;
+    private long missingInBank;
+    private long missingInClearing;
+    private long statusMismatches;
+    private long amountMismatches;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
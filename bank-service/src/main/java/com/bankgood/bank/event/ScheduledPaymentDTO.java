@@ -0,0 +1,30 @@
+package com.bankgood.bank.event;
+
+import com.bankgood.bank.model.Recurrence;
+import com.bankgood.bank.model.ScheduledPaymentStatus;
+import com.bankgood.bank.model.TransactionStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class ScheduledPaymentDTO {
+    private UUID id;
+    private String fromAccountNumber;
+    private String toBankgoodNumber;
+    private BigDecimal amount;
+    private Recurrence recurrence;
+    private LocalDateTime nextExecutionAt; // first execution when creating
+    private LocalDate endDate;
+    private ScheduledPaymentStatus status;
+    private int executions;
+    private UUID lastTransactionId;
+    private TransactionStatus lastTransactionStatus;
+}
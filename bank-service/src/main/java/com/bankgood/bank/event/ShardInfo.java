@@ -0,0 +1,15 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class ShardInfo {
+    private int shard;
+    private int buckets;
+    private int movingBuckets; // buckets being moved off this shard
+    private long accounts;
+}
@@ -0,0 +1,32 @@
+package com.bankgood.bank.event;
+
+import com.bankgood.bank.model.TransactionStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One row of an account's payment history. direction is OUTGOING or INCOMING;
+ * toBankgoodNumber is only known for outgoing payments.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class TransactionHistoryEntry {
+    private String direction;
+    private UUID transactionId;
+    private String accountNumber;
+    private String toBankgoodNumber;
+    private BigDecimal amount;
+    private TransactionStatus status;
+    private LocalDateTime createdAt;
+
+    public TransactionHistoryEntry(String direction, UUID transactionId, String accountNumber,
+            BigDecimal amount, TransactionStatus status, LocalDateTime createdAt) {
+        this(direction, transactionId, accountNumber, null, amount, status, createdAt);
+    }
+}
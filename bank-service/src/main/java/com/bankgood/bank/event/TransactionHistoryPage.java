@@ -0,0 +1,19 @@
+package com.bankgood.bank.event;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One page of an account's history, newest first. Pass nextCursor as the
+ * "before" parameter to continue; it is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class TransactionHistoryPage {
+    private List<TransactionHistoryEntry> entries;
+    private String nextCursor;
+}
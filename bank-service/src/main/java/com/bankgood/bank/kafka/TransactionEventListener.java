@@ -2,6 +2,7 @@ package com.bankgood.bank.kafka;
 
 import com.bankgood.bank.event.IncomingTransactionEvent;
 import com.bankgood.bank.event.TransactionResponseEvent;
+import com.bankgood.bank.service.ShardRouter;
 import com.bankgood.bank.service.TransactionService;
 
 import org.springframework.beans.factory.annotation.Value;
@@ -17,9 +18,11 @@ public class TransactionEventListener {
     private String clearingNumber;
 
     private final TransactionService transactionService;
+    private final ShardRouter shardRouter;
 
-    public TransactionEventListener(TransactionService transactionService) {
+    public TransactionEventListener(TransactionService transactionService, ShardRouter shardRouter) {
         this.transactionService = transactionService;
+        this.shardRouter = shardRouter;
     }
 
     // (1) Bank tar emot transaktion från clearing → ska behandla den
@@ -29,7 +32,7 @@ public class TransactionEventListener {
             containerFactory = "incomingListenerFactory"
     )
     public void listenIncoming(IncomingTransactionEvent event) {
-        transactionService.handleIncomingTransaction(event);
+        shardRouter.forAccount(event.getToAccountNumber(), () -> transactionService.handleIncomingTransaction(event));
     }
 
 
@@ -40,6 +43,7 @@ public class TransactionEventListener {
             containerFactory = "responseListenerFactory"
     )
     public void listenCompleted(TransactionResponseEvent event) {
-        transactionService.handleCompletedTransaction(event);
+        shardRouter.forId(event.getTransactionId(), () -> transactionService.outgoingExists(event.getTransactionId()),
+                () -> transactionService.handleCompletedTransaction(event));
     }
 }
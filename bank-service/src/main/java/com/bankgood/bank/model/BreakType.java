@@ -0,0 +1,8 @@
+package com.bankgood.bank.model;
+
+public enum BreakType {
+    MISSING_IN_BANK,     // clearing has the transaction, the bank does not
+    MISSING_IN_CLEARING, // the bank has the transaction, clearing does not
+    STATUS_MISMATCH,
+    AMOUNT_MISMATCH
+}
@@ -0,0 +1,38 @@
+package com.bankgood.bank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A bulk payment file that has been reserved and written. The batch id is
+ * derived from the debit account and the client's idempotency key (or the
+ * file content), so a resubmitted file finds this row instead of paying its
+ * lines a second time. Written by BulkPaymentService.
+ */
+@Entity
+@Table(name = "bulk_payment_batches")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPaymentBatch {
+
+    @Id
+    @Column(updatable = false, nullable = false)
+    private UUID batchId;
+
+    @Column(nullable = false)
+    private String fromAccountNumber;
+
+    // SHA-256 of the request body, to catch an idempotency key reused for another file
+    @Column(nullable = false)
+    private String contentHash;
+
+    // Line transaction ids are derived from this time, so a resubmission gets the same ids
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
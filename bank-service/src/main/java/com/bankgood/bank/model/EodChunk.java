@@ -0,0 +1,61 @@
+package com.bankgood.bank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Checkpoint for one account-id range of an end-of-day run. A chunk is marked
+ * COMPLETED in the same transaction that applies it, so a resumed run only
+ * processes the chunks that are still PENDING.
+ */
+@Entity
+@Table(name = "eod_chunks", indexes = {
+        @Index(name = "idx_eod_chunk_run_status", columnList = "runId, status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EodChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long runId;
+
+    @Column(nullable = false)
+    private int chunkNo;
+
+    private UUID fromAccountId; // inclusive, null for the first chunk
+
+    private UUID toAccountId;   // exclusive, null for the last chunk
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EodStatus status = EodStatus.PENDING;
+
+    @Column(nullable = false)
+    private long accountsProcessed;
+
+    @Column(nullable = false)
+    private BigDecimal interestPosted = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private BigDecimal feesCharged = BigDecimal.ZERO;
+
+    private LocalDateTime completedAt;
+
+    public EodChunk(Long runId, int chunkNo, UUID fromAccountId, UUID toAccountId) {
+        this.runId = runId;
+        this.chunkNo = chunkNo;
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+    }
+}
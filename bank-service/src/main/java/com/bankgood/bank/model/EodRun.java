@@ -0,0 +1,55 @@
+package com.bankgood.bank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One end-of-day run per business date. The unique business date is what
+ * makes a rerun of the same day resume the existing run instead of posting
+ * interest twice.
+ */
+@Entity
+@Table(name = "eod_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EodRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private LocalDate businessDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EodStatus status = EodStatus.RUNNING;
+
+    @Column(nullable = false)
+    private int chunkCount;
+
+    @Column(nullable = false)
+    private long accountsProcessed;
+
+    @Column(nullable = false)
+    private BigDecimal interestPosted = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private BigDecimal feesCharged = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt = LocalDateTime.now();
+
+    private LocalDateTime finishedAt;
+
+    public EodRun(LocalDate businessDate) {
+        this.businessDate = businessDate;
+    }
+}
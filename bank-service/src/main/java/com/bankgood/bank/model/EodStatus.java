@@ -0,0 +1,8 @@
+package com.bankgood.bank.model;
+
+public enum EodStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -11,6 +11,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
+// Can be partitioned by created_at month; indexes are created by TransactionPartitionManager
 @Table(name = "incoming_transactions")
 @Data
 @NoArgsConstructor
@@ -18,7 +19,9 @@ import lombok.*;
 public class IncomingTransaction {
 
     @Id
-    @Column(unique = true, updatable = false, nullable = false)
+    // Once partitioned the primary key is (transaction_id, created_at); the id alone
+    // is kept unique in incoming_transactions_ids (see TransactionPartitionManager)
+    @Column(updatable = false, nullable = false)
     private UUID transactionId;
 
     @Column(nullable = false)
@@ -35,7 +38,7 @@ public class IncomingTransaction {
     private TransactionStatus status = TransactionStatus.PENDING; // PENDING, SUCCESS, FAILED
 
     @CreationTimestamp
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
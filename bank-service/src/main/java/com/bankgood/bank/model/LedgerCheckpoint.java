@@ -0,0 +1,39 @@
+package com.bankgood.bank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Balance of an account including every ledger entry created up to and
+ * including asOf. Written by LedgerService for accounts with new entries.
+ */
+@Entity
+@Table(name = "ledger_checkpoints", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_ledger_checkpoint_account_as_of", columnNames = { "accountId", "asOf" })
+}, indexes = {
+        @Index(name = "idx_ledger_checkpoint_as_of", columnList = "asOf")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private UUID accountId;
+
+    @Column(nullable = false)
+    private LocalDateTime asOf;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+}
@@ -0,0 +1,52 @@
+package com.bankgood.bank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One leg of a balance change. Rows are only ever inserted: every posting
+ * writes two legs with the same postingId whose amounts sum to zero, one on
+ * the customer account and one on an internal account (see LedgerService).
+ * A positive amount increases the account's balance.
+ */
+@Entity
+@Table(name = "ledger_entries", indexes = {
+        // Serves the bounded scan from a checkpoint to the requested time
+        @Index(name = "idx_ledger_account_created", columnList = "accountId, createdAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEntry {
+
+    // Pooled sequence ids let Hibernate batch the two legs into one round trip
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entries_seq")
+    @SequenceGenerator(name = "ledger_entries_seq", sequenceName = "ledger_entries_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, updatable = false)
+    private UUID postingId;
+
+    @Column(nullable = false, updatable = false)
+    private UUID accountId;
+
+    @Column(nullable = false, updatable = false)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private LedgerEntryType entryType;
+
+    @Column(updatable = false)
+    private UUID transactionId; // the payment behind the posting, if any
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,9 @@
+package com.bankgood.bank.model;
+
+public enum LedgerEntryType {
+    OPENING,  // balance an account was created or imported with
+    DEPOSIT,  // incoming payment or manual deposit
+    PAYMENT,  // settled outgoing payment
+    INTEREST,
+    FEE
+}
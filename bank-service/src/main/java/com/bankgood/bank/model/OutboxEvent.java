@@ -24,8 +24,10 @@ import java.util.UUID;
 @Setter
 public class OutboxEvent {
 
+    // Pooled sequence ids let Hibernate batch inserts; IDENTITY forces one INSERT per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "outbox_events_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -11,6 +11,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
+// Can be partitioned by created_at month; indexes are created by TransactionPartitionManager
 @Table(name = "outgoing_transactions")
 @Data
 @NoArgsConstructor
@@ -18,8 +19,10 @@ import lombok.*;
 public class OutgoingTransaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
-    @Column(unique = true, updatable = false, nullable = false)
+    @UuidV7Id
+    // Once partitioned the primary key is (transaction_id, created_at); the id alone
+    // is kept unique in outgoing_transactions_ids (see TransactionPartitionManager)
+    @Column(updatable = false, nullable = false)
     private UUID transactionId;
 
     @Column(nullable = false)
@@ -38,8 +41,11 @@ public class OutgoingTransaction {
     @Column(nullable = false)
     private TransactionStatus status = TransactionStatus.PENDING; // PENDING, SUCCESS, FAILED
 
+    // Set when the payment was submitted as part of a bulk file
+    private UUID batchId;
+
     @CreationTimestamp
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
@@ -0,0 +1,48 @@
+package com.bankgood.bank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * A transaction on which the bank and clearing disagree. The bank or clearing
+ * columns are null when that side has no such transaction.
+ */
+@Entity
+@Table(name = "reconciliation_breaks", indexes = {
+        @Index(name = "idx_reconciliation_break_run", columnList = "runId, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationBreak {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long runId;
+
+    @Column(nullable = false)
+    private UUID transactionId;
+
+    @Column(nullable = false)
+    private String direction; // OUTGOING or INCOMING, as seen from the bank
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private BreakType type;
+
+    private String bankStatus;
+
+    private BigDecimal bankAmount;
+
+    private String clearingStatus;
+
+    private BigDecimal clearingAmount;
+}
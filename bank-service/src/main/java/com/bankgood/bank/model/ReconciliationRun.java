@@ -0,0 +1,65 @@
+package com.bankgood.bank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One reconciliation of the bank's transactions against clearing's, covering
+ * the transactions created in [fromTime, toTime). The toTime of the latest
+ * completed run is the high watermark the next incremental run starts from.
+ */
+@Entity
+@Table(name = "reconciliation_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private LocalDateTime fromTime; // inclusive, null for a full run
+
+    @Column(nullable = false)
+    private LocalDateTime toTime;   // exclusive
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReconciliationStatus status = ReconciliationStatus.RUNNING;
+
+    @Column(nullable = false)
+    private long bankRows;
+
+    @Column(nullable = false)
+    private long clearingRows;
+
+    @Column(nullable = false)
+    private long matched;
+
+    @Column(nullable = false)
+    private long missingInBank;
+
+    @Column(nullable = false)
+    private long missingInClearing;
+
+    @Column(nullable = false)
+    private long statusMismatches;
+
+    @Column(nullable = false)
+    private long amountMismatches;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt = LocalDateTime.now();
+
+    private LocalDateTime finishedAt;
+
+    public ReconciliationRun(LocalDateTime fromTime, LocalDateTime toTime) {
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+    }
+}
@@ -0,0 +1,8 @@
+package com.bankgood.bank.model;
+
+public enum Recurrence {
+    NONE,
+    DAILY,
+    WEEKLY,
+    MONTHLY
+}
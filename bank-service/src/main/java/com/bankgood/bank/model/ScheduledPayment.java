@@ -0,0 +1,75 @@
+package com.bankgood.bank.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A future-dated payment or standing order. Only ACTIVE rows are scanned, in
+ * nextExecutionAt order, so the index also serves the horizon loader's keyset.
+ */
+@Entity
+@Table(name = "scheduled_payments", indexes = {
+        @Index(name = "idx_scheduled_status_next", columnList = "status, nextExecutionAt, id"),
+        @Index(name = "idx_scheduled_from_account", columnList = "fromAccountNumber")
+})
+@DynamicUpdate
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class ScheduledPayment {
+
+    @Id
+    @UuidV7Id
+    @Column(updatable = false, nullable = false)
+    private UUID id;
+
+    @Column(nullable = false)
+    private String fromAccountNumber;
+
+    @Column(nullable = false)
+    private String toBankgoodNumber;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Recurrence recurrence = Recurrence.NONE;
+
+    // Day of month of the first execution; MONTHLY orders return to it after short months
+    @Column(nullable = false)
+    private int anchorDay;
+
+    @Column(nullable = false)
+    private LocalDateTime nextExecutionAt;
+
+    private LocalDate endDate; // last day a recurring order may execute, null for open-ended
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ScheduledPaymentStatus status = ScheduledPaymentStatus.ACTIVE;
+
+    @Column(nullable = false)
+    private int executions;
+
+    private UUID lastTransactionId;
+
+    @Enumerated(EnumType.STRING)
+    private TransactionStatus lastTransactionStatus;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,7 @@
+package com.bankgood.bank.model;
+
+public enum ScheduledPaymentStatus {
+    ACTIVE,
+    COMPLETED,
+    CANCELLED
+}
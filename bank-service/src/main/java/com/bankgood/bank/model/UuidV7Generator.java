@@ -0,0 +1,30 @@
+package com.bankgood.bank.model;
+
+import java.util.EnumSet;
+
+import com.bankgood.bank.config.ShardContext;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+/**
+ * Assigns a {@link UuidV7} when an entity annotated with {@link UuidV7Id} is inserted.
+ * Inside account context the id carries the account's shard bucket.
+ */
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+            EventType eventType) {
+        return ShardContext.newId();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
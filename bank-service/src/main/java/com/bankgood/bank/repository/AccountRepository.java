@@ -1,19 +1,53 @@
 package com.bankgood.bank.repository;
 
+import com.bankgood.bank.event.AccountBalance;
+import com.bankgood.bank.event.AccountDTO;
 import com.bankgood.bank.model.Account;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface AccountRepository extends JpaRepository<Account, UUID> {
     Optional<Account> findByAccountNumber(String accountNumber);
 
+    List<Account> findByAccountNumberGreaterThanOrderByAccountNumber(String after, Pageable pageable);
+
     @Modifying
     @Query("UPDATE Account a SET a.balance = :balance WHERE a.accountId = :accountId")
     void updateBalance(UUID accountId, BigDecimal balance);
 
+    // Keyset page: seeks on the unique account_number index instead of OFFSET
+    @Query("SELECT new com.bankgood.bank.event.AccountDTO(a.accountId, a.accountNumber, a.accountHolder, "
+            + "a.balance, a.reservedBalance, a.createdAt, a.updatedAt) "
+            + "FROM Account a WHERE a.accountNumber > :after ORDER BY a.accountNumber")
+    List<AccountDTO> findPageAfter(String after, Pageable pageable);
+
+    // One round trip for a whole batch of balance inquiries
+    @Query("SELECT new com.bankgood.bank.event.AccountBalance(a.accountNumber, a.balance, a.reservedBalance) "
+            + "FROM Account a WHERE a.accountNumber IN :accountNumbers")
+    List<AccountBalance> findBalances(Collection<String> accountNumbers);
+
+    // Server-side cursor over read-only DTO projections; must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.bankgood.bank.event.AccountDTO(a.accountId, a.accountNumber, a.accountHolder, "
+            + "a.balance, a.reservedBalance, a.createdAt, a.updatedAt) "
+            + "FROM Account a ORDER BY a.accountNumber")
+    Stream<AccountDTO> streamAll();
+
 }
@@ -0,0 +1,15 @@
+package com.bankgood.bank.repository;
+
+import com.bankgood.bank.model.EodChunk;
+import com.bankgood.bank.model.EodStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface EodChunkRepository extends JpaRepository<EodChunk, Long> {
+    List<EodChunk> findByRunIdAndStatusOrderByChunkNo(Long runId, EodStatus status);
+    long countByRunIdAndStatus(Long runId, EodStatus status);
+    long countByRunIdAndStatusNot(Long runId, EodStatus status);
+}
@@ -0,0 +1,13 @@
+package com.bankgood.bank.repository;
+
+import com.bankgood.bank.model.EodRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface EodRunRepository extends JpaRepository<EodRun, Long> {
+    Optional<EodRun> findByBusinessDate(LocalDate businessDate);
+}
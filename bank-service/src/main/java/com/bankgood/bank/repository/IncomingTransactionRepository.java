@@ -1,13 +1,39 @@
 package com.bankgood.bank.repository;
 
+import com.bankgood.bank.event.TransactionHistoryEntry;
 import com.bankgood.bank.model.IncomingTransaction;
+import com.bankgood.bank.model.TransactionStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface IncomingTransactionRepository extends JpaRepository<IncomingTransaction, UUID> {
     Optional<IncomingTransaction> findByTransactionId(UUID transactionId);
+
+    // Keyset page over idx_incoming_account_created, newest first
+    @Query("SELECT new com.bankgood.bank.event.TransactionHistoryEntry('INCOMING', t.transactionId, "
+            + "t.toAccountNumber, t.amount, t.status, t.createdAt) "
+            + "FROM IncomingTransaction t WHERE t.toAccountNumber = :accountNumber "
+            + "AND (t.createdAt < :beforeCreatedAt "
+            + "OR (t.createdAt = :beforeCreatedAt AND t.transactionId < :beforeId)) "
+            + "ORDER BY t.createdAt DESC, t.transactionId DESC")
+    List<TransactionHistoryEntry> findHistoryPage(String accountNumber,
+            LocalDateTime beforeCreatedAt, UUID beforeId, Pageable pageable);
+
+    // Keyset page of one status over idx_incoming_account_status_created, newest first
+    @Query("SELECT new com.bankgood.bank.event.TransactionHistoryEntry('INCOMING', t.transactionId, "
+            + "t.toAccountNumber, t.amount, t.status, t.createdAt) "
+            + "FROM IncomingTransaction t WHERE t.toAccountNumber = :accountNumber AND t.status = :status "
+            + "AND (t.createdAt < :beforeCreatedAt "
+            + "OR (t.createdAt = :beforeCreatedAt AND t.transactionId < :beforeId)) "
+            + "ORDER BY t.createdAt DESC, t.transactionId DESC")
+    List<TransactionHistoryEntry> findHistoryPageByStatus(String accountNumber, TransactionStatus status,
+            LocalDateTime beforeCreatedAt, UUID beforeId, Pageable pageable);
 }
@@ -0,0 +1,7 @@
+package com.bankgood.bank.repository;
+
+import com.bankgood.bank.model.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+}
@@ -1,15 +1,25 @@
 package com.bankgood.bank.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.bankgood.bank.model.OutboxEvent;
 
 @Repository
 public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
-    List<OutboxEvent> findByPublishedFalseOrderByCreatedAtAsc();
+    // One page of the publisher; the size matches OutboxEventPublisher.PAGE_SIZE
+    List<OutboxEvent> findTop1000ByPublishedFalseOrderByCreatedAtAsc();
     boolean existsByTransactionIdAndTopic(UUID transactionId, String topic);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.published = true WHERE e.id IN :ids")
+    int markPublished(Collection<Long> ids);
 }
\ No newline at end of file
@@ -1,13 +1,39 @@
 package com.bankgood.bank.repository;
 
+import com.bankgood.bank.event.TransactionHistoryEntry;
 import com.bankgood.bank.model.OutgoingTransaction;
+import com.bankgood.bank.model.TransactionStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface OutgoingTransactionRepository extends JpaRepository<OutgoingTransaction, UUID> {
     Optional<OutgoingTransaction> findByTransactionId(UUID transactionId);
+
+    // Keyset page over idx_outgoing_account_created, newest first
+    @Query("SELECT new com.bankgood.bank.event.TransactionHistoryEntry('OUTGOING', t.transactionId, "
+            + "t.fromAccountNumber, t.toBankgoodNumber, t.amount, t.status, t.createdAt) "
+            + "FROM OutgoingTransaction t WHERE t.fromAccountNumber = :accountNumber "
+            + "AND (t.createdAt < :beforeCreatedAt "
+            + "OR (t.createdAt = :beforeCreatedAt AND t.transactionId < :beforeId)) "
+            + "ORDER BY t.createdAt DESC, t.transactionId DESC")
+    List<TransactionHistoryEntry> findHistoryPage(String accountNumber,
+            LocalDateTime beforeCreatedAt, UUID beforeId, Pageable pageable);
+
+    // Keyset page of one status over idx_outgoing_account_status_created, newest first
+    @Query("SELECT new com.bankgood.bank.event.TransactionHistoryEntry('OUTGOING', t.transactionId, "
+            + "t.fromAccountNumber, t.toBankgoodNumber, t.amount, t.status, t.createdAt) "
+            + "FROM OutgoingTransaction t WHERE t.fromAccountNumber = :accountNumber AND t.status = :status "
+            + "AND (t.createdAt < :beforeCreatedAt "
+            + "OR (t.createdAt = :beforeCreatedAt AND t.transactionId < :beforeId)) "
+            + "ORDER BY t.createdAt DESC, t.transactionId DESC")
+    List<TransactionHistoryEntry> findHistoryPageByStatus(String accountNumber, TransactionStatus status,
+            LocalDateTime beforeCreatedAt, UUID beforeId, Pageable pageable);
 }
@@ -0,0 +1,13 @@
+package com.bankgood.bank.repository;
+
+import com.bankgood.bank.model.ReconciliationBreak;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReconciliationBreakRepository extends JpaRepository<ReconciliationBreak, Long> {
+    List<ReconciliationBreak> findByRunIdAndIdGreaterThanOrderById(Long runId, long afterId, Pageable pageable);
+}
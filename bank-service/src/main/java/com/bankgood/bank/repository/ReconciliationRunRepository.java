@@ -0,0 +1,13 @@
+package com.bankgood.bank.repository;
+
+import com.bankgood.bank.model.ReconciliationRun;
+import com.bankgood.bank.model.ReconciliationStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ReconciliationRunRepository extends JpaRepository<ReconciliationRun, Long> {
+    Optional<ReconciliationRun> findTopByStatusOrderByToTimeDesc(ReconciliationStatus status);
+}
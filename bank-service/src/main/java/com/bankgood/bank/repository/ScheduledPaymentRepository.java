@@ -0,0 +1,49 @@
+package com.bankgood.bank.repository;
+
+import com.bankgood.bank.model.ScheduledPayment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ScheduledPaymentRepository extends JpaRepository<ScheduledPayment, UUID> {
+
+    interface DueEntry {
+        UUID getId();
+        LocalDateTime getNextExecutionAt();
+    }
+
+    List<ScheduledPayment> findByFromAccountNumberOrderByNextExecutionAt(String fromAccountNumber);
+
+    // Keyset over (nextExecutionAt, id): many standing orders share the same execution time
+    @Query("SELECT p.id AS id, p.nextExecutionAt AS nextExecutionAt FROM ScheduledPayment p "
+            + "WHERE p.status = com.bankgood.bank.model.ScheduledPaymentStatus.ACTIVE "
+            + "AND p.nextExecutionAt < :until "
+            + "AND (p.nextExecutionAt > :afterTime OR (p.nextExecutionAt = :afterTime AND p.id > :afterId)) "
+            + "ORDER BY p.nextExecutionAt, p.id")
+    List<DueEntry> findUpcoming(LocalDateTime until, LocalDateTime afterTime, UUID afterId, Pageable pageable);
+
+    @Query("SELECT p.id AS id, p.nextExecutionAt AS nextExecutionAt FROM ScheduledPayment p "
+            + "WHERE p.status = com.bankgood.bank.model.ScheduledPaymentStatus.ACTIVE "
+            + "AND p.nextExecutionAt < :before ORDER BY p.nextExecutionAt, p.id")
+    List<DueEntry> findOverdue(LocalDateTime before, Pageable pageable);
+
+    // Claims the due rows of a batch; rows held by another pod are skipped, not waited for
+    @Query(value = "SELECT * FROM scheduled_payments WHERE id IN (:ids) AND status = 'ACTIVE' "
+            + "AND next_execution_at <= :now ORDER BY id FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<ScheduledPayment> lockDue(Collection<UUID> ids, LocalDateTime now);
+
+    // Touches only the status, so an execution committing at the same time keeps its changes
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ScheduledPayment p SET p.status = com.bankgood.bank.model.ScheduledPaymentStatus.CANCELLED, "
+            + "p.updatedAt = LOCAL DATETIME "
+            + "WHERE p.id = :id AND p.status = com.bankgood.bank.model.ScheduledPaymentStatus.ACTIVE")
+    int cancelIfActive(UUID id);
+}
@@ -0,0 +1,342 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.event.AccountDTO;
+import com.bankgood.bank.event.AccountImportReject;
+import com.bankgood.bank.event.AccountImportResult;
+import com.bankgood.bank.model.UuidV7;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Bulk account import for seeding and migrations.
+ *
+ * Rows are validated while the body is streamed and written straight into a
+ * temporary staging table with COPY, then merged into accounts with one
+ * INSERT ... SELECT. Rows repeating an account number earlier in the file or
+ * already present in accounts are skipped and reported as duplicates.
+ *
+ * With sharding, the body is read once per shard and each pass imports that
+ * shard's rows in its own transaction.
+ *
+ * Accepted formats:
+ * CSV    accountNumber,accountHolder,balance (header line optional, RFC 4180 quoting)
+ * NDJSON {"accountNumber": "...", "accountHolder": "...", "balance": 100.00} per line
+ */
+@Slf4j
+@Service
+public class AccountImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String CREATE_STAGING = "CREATE TEMP TABLE account_import ("
+            + "line bigint NOT NULL, account_id uuid NOT NULL, account_number text NOT NULL, "
+            + "account_holder text NOT NULL, balance numeric NOT NULL, duplicate text) ON COMMIT DROP";
+
+    private static final String COPY_STAGING = "COPY account_import (line, account_id, account_number, account_holder, balance) "
+            + "FROM STDIN WITH (FORMAT csv)";
+
+    private static final String MARK_FILE_DUPLICATES = "UPDATE account_import s SET duplicate = 'Duplicate account number in file' "
+            + "WHERE EXISTS (SELECT 1 FROM account_import d WHERE d.account_number = s.account_number AND d.line < s.line)";
+
+    private static final String MARK_EXISTING = "UPDATE account_import s SET duplicate = 'Account already exists' "
+            + "FROM accounts a WHERE a.account_number = s.account_number AND s.duplicate IS NULL";
+
+    // Returns the number of accounts inserted; their opening balances are posted to the ledger
+    private static final String MERGE = "WITH inserted AS ("
+            + "  INSERT INTO accounts "
+            + "  (account_id, account_number, account_holder, balance, reserved_balance, version, created_at, updated_at) "
+            + "  SELECT account_id, account_number, account_holder, balance, 0, 0, now(), now() "
+            + "  FROM account_import WHERE duplicate IS NULL ORDER BY account_number "
+            + "  ON CONFLICT (account_number) DO NOTHING RETURNING account_id, balance), "
+            + "postings AS ("
+            + "  SELECT gen_random_uuid() AS posting_id, account_id, balance AS amount, 'OPENING' AS entry_type, "
+            + "  '" + LedgerService.OPENING_EQUITY + "'::uuid AS contra_id FROM inserted WHERE balance <> 0), "
+            + "ledger AS (" + LedgerService.INSERT_POSTINGS.formatted("postings") + ") "
+            + "SELECT count(*) FROM inserted";
+
+    @Value("${bank.account-import.max-rejects:1000}")
+    private int maxRejects;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final AccountReadModel readModel;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    public AccountImportService(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                ObjectMapper objectMapper, AccountReadModel readModel,
+                                PlatformTransactionManager transactionManager, ShardRouter shardRouter) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.readModel = readModel;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+    }
+
+    public AccountImportResult importAccounts(InputStream body, Format format) {
+        long started = System.currentTimeMillis();
+        AccountImportResult result = new AccountImportResult();
+        List<AccountImportReject> duplicates = new ArrayList<>();
+        long imported;
+
+        try {
+            if (!shardRouter.isSharded()) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+                imported = transactionTemplate.execute(status -> importShard(reader, format, 0, result, duplicates));
+            } else {
+                imported = importSharded(body, format, result, duplicates);
+            }
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Could not read import body");
+        }
+
+        result.setImported(imported);
+        // Rows lost to ON CONFLICT were created concurrently after MARK_EXISTING
+        result.setDuplicates(result.getRowsRead() - result.getRejected() - imported);
+
+        duplicates.sort(Comparator.comparingLong(AccountImportReject::getLine));
+        int room = maxRejects - result.getRejects().size();
+        result.getRejects().addAll(duplicates.subList(0, Math.max(0, Math.min(room, duplicates.size()))));
+
+        result.setElapsedMs(System.currentTimeMillis() - started);
+        log.info("Imported {} of {} accounts ({} duplicates, {} rejected) in {} ms",
+                imported, result.getRowsRead(), result.getDuplicates(), result.getRejected(),
+                result.getElapsedMs());
+        return result;
+    }
+
+    /**
+     * Spools the body to a temporary file and imports it once per shard, each
+     * pass keeping only the rows of that shard. Every pass commits on its own,
+     * so a failing pass leaves the shards before it imported.
+     */
+    private long importSharded(InputStream body, Format format, AccountImportResult result,
+                               List<AccountImportReject> duplicates) throws IOException {
+        Path spool = Files.createTempFile("account-import", ".tmp");
+        try {
+            Files.copy(body, spool, StandardCopyOption.REPLACE_EXISTING);
+            long imported = 0;
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                int current = shard;
+                // Every pass reads the same rows; counts and validation rejects come from the first
+                AccountImportResult counts = shard == 0 ? result : new AccountImportResult();
+                try (BufferedReader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+                    imported += shardRouter.onShard(shard, () -> transactionTemplate.execute(
+                            status -> importShard(reader, format, current, counts, duplicates)));
+                }
+            }
+            return imported;
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    // Stages the shard's rows and merges them in the current transaction; returns the number inserted
+    private int importShard(BufferedReader reader, Format format, int shard, AccountImportResult result,
+                            List<AccountImportReject> duplicates) {
+        // The staging table only exists on the connection bound to this transaction
+        jdbcTemplate.execute(CREATE_STAGING);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+
+        try {
+            CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING);
+            try {
+                stage(reader, format, shard, copy, result);
+                copy.endCopy();
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Could not read import body");
+        } catch (SQLException e) {
+            throw new IllegalStateException("COPY into staging table failed", e);
+        }
+
+        jdbcTemplate.execute("CREATE INDEX ON account_import (account_number, line)");
+        jdbcTemplate.execute("ANALYZE account_import");
+        jdbcTemplate.update(MARK_FILE_DUPLICATES);
+        jdbcTemplate.update(MARK_EXISTING);
+
+        int staged = jdbcTemplate.queryForObject("SELECT count(*) FROM account_import WHERE duplicate IS NULL", Integer.class);
+        int imported = jdbcTemplate.queryForObject(MERGE, Integer.class);
+
+        duplicates.addAll(jdbcTemplate.query(
+                "SELECT line, account_number, duplicate FROM account_import WHERE duplicate IS NOT NULL ORDER BY line LIMIT ?",
+                (rs, i) -> new AccountImportReject(rs.getLong(1), rs.getString(2), rs.getString(3)),
+                maxRejects));
+
+        if (imported > 0) {
+            // Listings may be served from memory; make the read model reload them
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readModel.evictAll();
+                }
+            });
+        }
+
+        log.debug("Imported {} accounts on shard {} ({} staged)", imported, shard, staged);
+        return imported;
+    }
+
+    // ====== Helpers ======
+
+    private void stage(BufferedReader reader, Format format, int shard, CopyIn copy, AccountImportResult result)
+            throws IOException, SQLException {
+        StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+        long line = 0;
+        String text;
+
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank() || (line == 1 && format == Format.CSV && isHeader(text))) {
+                continue;
+            }
+            result.setRowsRead(result.getRowsRead() + 1);
+
+            AccountDTO row;
+            try {
+                row = format == Format.CSV ? parseCsv(text) : objectMapper.readValue(text, AccountDTO.class);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                reject(result, line, null, "Malformed row");
+                continue;
+            }
+
+            String reason = validate(row);
+            if (reason != null) {
+                reject(result, line, row.getAccountNumber(), reason);
+                continue;
+            }
+            if (shardRouter.isSharded() && shardRouter.shardOf(row.getAccountNumber()) != shard) {
+                continue;
+            }
+
+            buffer.append(line).append(',')
+                    .append(UuidV7.generate()).append(',');
+            appendCsv(buffer, row.getAccountNumber()).append(',');
+            appendCsv(buffer, row.getAccountHolder()).append(',')
+                    .append(row.getBalance().toPlainString()).append('\n');
+
+            if (buffer.length() >= COPY_BUFFER_SIZE) {
+                flush(buffer, copy);
+            }
+        }
+        flush(buffer, copy);
+    }
+
+    private String validate(AccountDTO row) {
+        if (row.getAccountNumber() == null || row.getAccountNumber().isBlank()) {
+            return "Account number is required";
+        }
+        if (row.getAccountHolder() == null || row.getAccountHolder().isBlank()) {
+            return "Account holder is required";
+        }
+        if (row.getBalance() == null) {
+            row.setBalance(BigDecimal.ZERO);
+        }
+        if (row.getBalance().signum() < 0) {
+            return "Balance cannot be negative";
+        }
+        return null;
+    }
+
+    private void reject(AccountImportResult result, long line, String accountNumber, String reason) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getRejects().size() < maxRejects) {
+            result.getRejects().add(new AccountImportReject(line, accountNumber, reason));
+        }
+    }
+
+    private void flush(StringBuilder buffer, CopyIn copy) throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private boolean isHeader(String text) {
+        String first = text.split(",", 2)[0].trim().replace("\"", "");
+        return first.equalsIgnoreCase("accountNumber") || first.equalsIgnoreCase("account_number");
+    }
+
+    private AccountDTO parseCsv(String text) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+
+        if (quoted || fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("Expected accountNumber,accountHolder[,balance]");
+        }
+        BigDecimal balance = fields.size() == 3 && !fields.get(2).isEmpty() ? new BigDecimal(fields.get(2)) : null;
+
+        AccountDTO row = new AccountDTO();
+        row.setAccountNumber(fields.get(0));
+        row.setAccountHolder(fields.get(1));
+        row.setBalance(balance);
+        return row;
+    }
+
+    private StringBuilder appendCsv(StringBuilder buffer, String value) {
+        return buffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,264 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.config.ReadPreference;
+import com.bankgood.bank.event.AccountBalance;
+import com.bankgood.bank.event.AccountChangedEvent;
+import com.bankgood.bank.event.AccountDTO;
+import com.bankgood.bank.event.AccountPage;
+import com.bankgood.bank.event.AccountView;
+import com.bankgood.bank.event.BulkBalanceResponse;
+import com.bankgood.bank.model.Account;
+import com.bankgood.bank.repository.AccountRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory projection of the accounts table used by the account query
+ * endpoints (CQRS read side).
+ *
+ * Local mutations arrive as AccountChangedEvents after commit. Writes made by
+ * other pods are picked up by reloading entries older than max-staleness-ms,
+ * so a read is never more than that window behind the primary.
+ *
+ * Listings are served from memory once every account has been loaded.
+ * Accounts created, changed or deleted on this pod reach the listing through
+ * the same events; those of other pods only through the periodic resync, so
+ * a listing is served from memory only while the last complete reload started
+ * less than listing-max-staleness-ms ago, and from the database otherwise.
+ */
+@Slf4j
+@Component
+public class AccountReadModel {
+
+    @Value("${bank.read-model.max-staleness-ms:1000}")
+    private long maxStalenessMs;
+
+    @Value("${bank.read-model.listing-max-staleness-ms:180000}")
+    private long listingMaxStalenessMs;
+
+    @Value("${bank.read-model.max-entries:500000}")
+    private int maxEntries;
+
+    @Value("${bank.read-model.preload:true}")
+    private boolean preload;
+
+    private static final int RELOAD_PAGE_SIZE = 1000;
+
+    private final AccountRepository accountRepository;
+    private final AccountService accountService;
+    private final ShardRouter shardRouter;
+
+    // Sorted so keyset pages can be served straight from memory
+    private final ConcurrentSkipListMap<String, AccountView> views = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong watermark = new AtomicLong();
+
+    // True once every account has been loaded, so listings can be served from memory
+    private volatile boolean complete = false;
+    // Start of the last reload that loaded every account
+    private volatile long completeAsOfMillis;
+
+    public AccountReadModel(AccountRepository accountRepository, AccountService accountService,
+                            ShardRouter shardRouter) {
+        this.accountRepository = accountRepository;
+        this.accountService = accountService;
+        this.shardRouter = shardRouter;
+    }
+
+    // =================== QUERIES ===================
+
+    public AccountView getAccount(String accountNumber) {
+        AccountView view = views.get(accountNumber);
+        if (view != null && isFresh(view)) {
+            return view;
+        }
+        // The projection promises max-staleness-ms behind the primary, so it never loads from a replica
+        Account account = shardRouter.forAccount(accountNumber,
+                        () -> ReadPreference.primary(() -> accountRepository.findByAccountNumber(accountNumber)))
+                .orElseThrow(() -> {
+                    evict(accountNumber);
+                    return new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found");
+                });
+        return apply(account);
+    }
+
+    /**
+     * Resolves many balances at once: fresh views are answered from memory and
+     * all remaining account numbers are fetched with a single IN query per shard.
+     */
+    public BulkBalanceResponse getBalances(List<String> accountNumbers) {
+        long currentWatermark = watermark.get();
+        Set<String> misses = new LinkedHashSet<>();
+        List<AccountBalance> balances = new ArrayList<>(accountNumbers.size());
+
+        for (String accountNumber : new LinkedHashSet<>(accountNumbers)) {
+            AccountView view = views.get(accountNumber);
+            if (view != null && isFresh(view)) {
+                AccountDTO account = view.getAccount();
+                balances.add(new AccountBalance(accountNumber, account.getBalance(), account.getReservedBalance()));
+            } else {
+                misses.add(accountNumber);
+            }
+        }
+
+        Map<Integer, List<String>> missesByShard = misses.stream()
+                .collect(Collectors.groupingBy(shardRouter::shardOf, TreeMap::new, Collectors.toList()));
+        missesByShard.forEach((shard, accounts) -> {
+            for (AccountBalance balance : shardRouter.onShard(shard,
+                    () -> ReadPreference.primary(() -> accountRepository.findBalances(accounts)))) {
+                balances.add(balance);
+                misses.remove(balance.getAccountNumber());
+            }
+        });
+        return new BulkBalanceResponse(balances, new ArrayList<>(misses), currentWatermark);
+    }
+
+    public AccountPage getAccountPage(String after, int limit) {
+        if (!complete || System.currentTimeMillis() - completeAsOfMillis > listingMaxStalenessMs) {
+            return accountService.getAccountPage(after, limit);
+        }
+        List<AccountDTO> accounts = (after != null ? views.tailMap(after, false) : views).values().stream()
+                .limit(limit)
+                .map(AccountView::getAccount)
+                .collect(Collectors.toList());
+        String nextAfter = accounts.size() == limit ? accounts.get(limit - 1).getAccountNumber() : null;
+        return new AccountPage(accounts, nextAfter);
+    }
+
+    public long getWatermark() {
+        return watermark.get();
+    }
+
+    // =================== PROJECTION ===================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccountChanged(AccountChangedEvent event) {
+        Account account = event.getAccount();
+        if (event.getPreviousAccountNumber() != null
+                && !event.getPreviousAccountNumber().equals(account.getAccountNumber())) {
+            evict(event.getPreviousAccountNumber());
+        }
+        if (event.isDeleted()) {
+            evict(account.getAccountNumber());
+            watermark.incrementAndGet();
+            return;
+        }
+        apply(account);
+    }
+
+    /**
+     * Drops every cached view. Used after set-based writes that bypass
+     * AccountService, such as bulk imports.
+     */
+    public void evictAll() {
+        complete = false;
+        views.clear();
+        size.set(0);
+    }
+
+    public void evict(String accountNumber) {
+        if (views.remove(accountNumber) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadOnStartup() {
+        if (preload) {
+            reload();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bank.read-model.resync-ms:60000}",
+            initialDelayString = "${bank.read-model.resync-ms:60000}")
+    public void resync() {
+        if (preload) {
+            reload();
+        }
+    }
+
+    private void reload() {
+        long started = System.currentTimeMillis();
+        // Complete only if every shard was read to the end
+        complete = shardRouter.gather(this::reloadShard).stream().allMatch(Boolean::booleanValue);
+        // Anything not refreshed by this pass was deleted elsewhere
+        if (complete) {
+            views.forEach((accountNumber, view) -> {
+                if (view.getLoadedAtMillis() < started) {
+                    evict(accountNumber);
+                }
+            });
+            completeAsOfMillis = started;
+        }
+        log.info("Read model loaded {} accounts (complete={})", size.get(), complete);
+    }
+
+    private boolean reloadShard() {
+        String after = "";
+        List<Account> page;
+        do {
+            page = accountRepository.findByAccountNumberGreaterThanOrderByAccountNumber(
+                    after, PageRequest.ofSize(RELOAD_PAGE_SIZE));
+            page.forEach(this::apply);
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getAccountNumber();
+            }
+        } while (page.size() == RELOAD_PAGE_SIZE && size.get() < maxEntries);
+        return page.size() < RELOAD_PAGE_SIZE;
+    }
+
+    private AccountView apply(Account account) {
+        long version = account.getVersion() != null ? account.getVersion() : 0L;
+        AccountView fresh = new AccountView(
+                accountService.toDTO(account),
+                version,
+                watermark.incrementAndGet(),
+                System.currentTimeMillis());
+
+        if (size.get() >= maxEntries && !views.containsKey(account.getAccountNumber())) {
+            complete = false;
+            return fresh;
+        }
+
+        // Never let a slower loader overwrite a newer version. The skip-list map's compute may run
+        // its function more than once, so size is only counted by the putIfAbsent that inserted
+        String accountNumber = account.getAccountNumber();
+        while (true) {
+            AccountView current = views.get(accountNumber);
+            if (current == null) {
+                if (views.putIfAbsent(accountNumber, fresh) == null) {
+                    size.incrementAndGet();
+                    return fresh;
+                }
+            } else if (fresh.getVersion() < current.getVersion()) {
+                return current;
+            } else if (views.replace(accountNumber, current, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private boolean isFresh(AccountView view) {
+        return System.currentTimeMillis() - view.getLoadedAtMillis() <= maxStalenessMs;
+    }
+}
@@ -1,25 +1,41 @@
 package com.bankgood.bank.service;
 
+import com.bankgood.bank.event.AccountChangedEvent;
 import com.bankgood.bank.event.AccountDTO;
+import com.bankgood.bank.event.AccountPage;
 import com.bankgood.bank.event.ReserveFundsResult;
 import com.bankgood.bank.model.Account;
+import com.bankgood.bank.model.LedgerEntryType;
 import com.bankgood.bank.repository.AccountRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class AccountService {
 
     private final AccountRepository accountRepository;
+    private final ApplicationEventPublisher events;
+    private final ObjectMapper objectMapper;
+    private final LedgerService ledgerService;
+    private final ShardRouter shardRouter;
 
     // =================== DTO MAPPERS ===================
     public AccountDTO toDTO(Account account) {
@@ -56,6 +72,11 @@ public class AccountService {
     public AccountDTO createAccount(AccountDTO dto) {
         Account account = toEntity(dto);
         Account saved = accountRepository.save(account);
+        if (saved.getBalance().signum() != 0) {
+            ledgerService.post(saved.getAccountId(), saved.getBalance(), LedgerService.OPENING_EQUITY,
+                    LedgerEntryType.OPENING, null);
+        }
+        publishChange(null, saved, false);
         return toDTO(saved);
     }
 
@@ -71,9 +92,38 @@ public class AccountService {
         return toDTO(account);
     }
 
-    public List<AccountDTO> getAllAccounts() {
-        List<Account> accounts = accountRepository.findAll();
-        return toDTOList(accounts);
+    // Each shard returns its own first page; merged they give the global one
+    public AccountPage getAccountPage(String after, int limit) {
+        List<List<AccountDTO>> pages = shardRouter.gather(() -> accountRepository.findPageAfter(
+                after != null ? after : "", PageRequest.ofSize(limit)));
+        List<AccountDTO> accounts = pages.size() == 1 ? pages.get(0) : pages.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(AccountDTO::getAccountNumber))
+                .limit(limit)
+                .collect(Collectors.toList());
+        String nextAfter = accounts.size() == limit ? accounts.get(limit - 1).getAccountNumber() : null;
+        return new AccountPage(accounts, nextAfter);
+    }
+
+    /**
+     * Writes every account as one JSON line to the given stream. Rows are read
+     * through a server-side cursor as DTO projections, so memory use stays
+     * constant regardless of table size. Exports the current shard only.
+     */
+    @Transactional(readOnly = true)
+    public long exportAccounts(OutputStream out) {
+        long count = 0;
+        try (Stream<AccountDTO> accounts = accountRepository.streamAll()) {
+            for (AccountDTO dto : (Iterable<AccountDTO>) accounts::iterator) {
+                out.write(objectMapper.writeValueAsBytes(dto));
+                out.write('\n');
+                count++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export accounts", e);
+        }
+        return count;
     }
 
     @Transactional
@@ -85,9 +135,16 @@ public class AccountService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Balance cannot be null or negative");
         }
 
+        if (shardRouter.shardOf(dto.getAccountNumber()) != shardRouter.shardOf(accountNumber)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The new account number belongs to another shard; create a new account instead");
+        }
+
+        String previousAccountNumber = existing.getAccountNumber();
         existing.setAccountHolder(dto.getAccountHolder());
         existing.setAccountNumber(dto.getAccountNumber());
         Account updated = accountRepository.save(existing);
+        publishChange(previousAccountNumber, updated, false);
         return toDTO(updated);
     }
 
@@ -96,6 +153,7 @@ public class AccountService {
         Account existing = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found"));
         accountRepository.delete(existing);
+        publishChange(null, existing, true);
     }
 
     // =================== TRANSACTION LOGIC ===================
@@ -111,6 +169,15 @@ public class AccountService {
      */
     @Transactional
     public AccountDTO deposit(String accountNumber, BigDecimal amount) {
+        return deposit(accountNumber, amount, null);
+    }
+
+    /**
+     * Deposits an incoming payment. The ledger posts it against the clearing
+     * account instead of cash when transactionId is given.
+     */
+    @Transactional
+    public AccountDTO deposit(String accountNumber, BigDecimal amount, UUID transactionId) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0)
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Deposit amount must be positive");
 
@@ -118,6 +185,10 @@ public class AccountService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found"));
 
         account.setBalance(account.getBalance().add(amount));
+        ledgerService.post(account.getAccountId(), amount,
+                transactionId != null ? LedgerService.CLEARING : LedgerService.CASH,
+                LedgerEntryType.DEPOSIT, transactionId);
+        publishChange(null, account, false);
         return toDTO(account);
     }
 
@@ -147,6 +218,7 @@ public ReserveFundsResult reserveFunds(String accountNumber, BigDecimal amount)
     }
 
     account.setReservedBalance(account.getReservedBalance().add(amount));
+    publishChange(null, account, false);
     return new ReserveFundsResult(true, "Funds reserved", toDTO(account));
 }
 
@@ -163,6 +235,15 @@ public ReserveFundsResult reserveFunds(String accountNumber, BigDecimal amount)
      */
     @Transactional
     public AccountDTO commitReservedFunds(String accountNumber, BigDecimal amount) {
+        return commitReservedFunds(accountNumber, amount, null);
+    }
+
+    /**
+     * Commits reserved funds for a settled outgoing payment, recording the
+     * payment's id on the ledger entries.
+     */
+    @Transactional
+    public AccountDTO commitReservedFunds(String accountNumber, BigDecimal amount, UUID transactionId) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0)
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Amount must be positive");
 
@@ -174,6 +255,9 @@ public ReserveFundsResult reserveFunds(String accountNumber, BigDecimal amount)
 
         account.setReservedBalance(account.getReservedBalance().subtract(amount));
         account.setBalance(account.getBalance().subtract(amount));
+        ledgerService.post(account.getAccountId(), amount.negate(), LedgerService.CLEARING,
+                LedgerEntryType.PAYMENT, transactionId);
+        publishChange(null, account, false);
 
         return toDTO(account);
     }
@@ -201,8 +285,16 @@ public ReserveFundsResult reserveFunds(String accountNumber, BigDecimal amount)
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not enough reserved funds to release");
 
         account.setReservedBalance(account.getReservedBalance().subtract(amount));
+        publishChange(null, account, false);
         
         return toDTO(account);
     }
 
+    // =================== HELPERS ===================
+
+    // Picked up by AccountReadModel once the surrounding transaction commits
+    private void publishChange(String previousAccountNumber, Account account, boolean deleted) {
+        events.publishEvent(new AccountChangedEvent(previousAccountNumber, account, deleted));
+    }
+
 }
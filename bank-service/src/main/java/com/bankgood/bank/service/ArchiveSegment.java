@@ -0,0 +1,263 @@
+package com.bankgood.bank.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File format of one archive segment: a batch of rows from one table, stored
+ * column by column with every column gzip-compressed on its own.
+ *
+ * [int header length][header][column 0]...[column n]
+ *
+ * The header holds the table, the row count, the min/max of created_at, the
+ * account number and the transaction id, and the compressed length of every
+ * column. Queries read the header to decide whether the segment can match at
+ * all and then decompress only the columns they need. Timestamps are stored
+ * as deltas from the previous row, which compress to almost nothing because
+ * rows are written in created_at order.
+ */
+final class ArchiveSegment {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x42474131; // "BGA1"
+
+    enum Type { UUID, STRING, DECIMAL, TIMESTAMP }
+
+    record Column(String name, Type type) {
+    }
+
+    /**
+     * Everything needed to prune a segment without touching its columns.
+     */
+    record Header(Path path, String table, int rows, LocalDateTime minCreatedAt, LocalDateTime maxCreatedAt,
+            String minAccount, String maxAccount, UUID minId, UUID maxId, Map<String, long[]> columns) {
+
+        boolean overlaps(LocalDateTime from, LocalDateTime to) {
+            return (from == null || !maxCreatedAt.isBefore(from)) && (to == null || minCreatedAt.isBefore(to));
+        }
+
+        boolean mayContainAccount(String accountNumber) {
+            return minAccount.compareTo(accountNumber) <= 0 && maxAccount.compareTo(accountNumber) >= 0;
+        }
+
+        boolean mayContainId(UUID id) {
+            return compareUuids(minId, id) <= 0 && compareUuids(maxId, id) >= 0;
+        }
+    }
+
+    private ArchiveSegment() {
+    }
+
+    /**
+     * Writes rows (in the order of columns, sorted by created_at) to a new
+     * segment in directory. The file is synced and then moved into place, so
+     * a segment is either complete or absent.
+     */
+    static Header write(Path directory, String name, String table, List<Column> columns, String accountColumn,
+            List<Object[]> rows) throws IOException {
+        int idColumn = indexOf(columns, "transaction_id");
+        int createdColumn = indexOf(columns, "created_at");
+        int account = indexOf(columns, accountColumn);
+
+        LocalDateTime minCreatedAt = null;
+        LocalDateTime maxCreatedAt = null;
+        String minAccount = null;
+        String maxAccount = null;
+        UUID minId = null;
+        UUID maxId = null;
+        for (Object[] row : rows) {
+            LocalDateTime createdAt = (LocalDateTime) row[createdColumn];
+            String accountNumber = (String) row[account];
+            UUID id = (UUID) row[idColumn];
+            minCreatedAt = minCreatedAt == null || createdAt.isBefore(minCreatedAt) ? createdAt : minCreatedAt;
+            maxCreatedAt = maxCreatedAt == null || createdAt.isAfter(maxCreatedAt) ? createdAt : maxCreatedAt;
+            minAccount = minAccount == null || accountNumber.compareTo(minAccount) < 0 ? accountNumber : minAccount;
+            maxAccount = maxAccount == null || accountNumber.compareTo(maxAccount) > 0 ? accountNumber : maxAccount;
+            minId = minId == null || compareUuids(id, minId) < 0 ? id : minId;
+            maxId = maxId == null || compareUuids(id, maxId) > 0 ? id : maxId;
+        }
+
+        List<byte[]> blobs = new ArrayList<>(columns.size());
+        for (int c = 0; c < columns.size(); c++) {
+            blobs.add(encode(columns.get(c).type(), rows, c));
+        }
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeUTF(table);
+        header.writeInt(rows.size());
+        header.writeLong(toMicros(minCreatedAt));
+        header.writeLong(toMicros(maxCreatedAt));
+        header.writeUTF(minAccount);
+        header.writeUTF(maxAccount);
+        writeUuid(header, minId);
+        writeUuid(header, maxId);
+        header.writeInt(columns.size());
+        for (int c = 0; c < columns.size(); c++) {
+            header.writeUTF(columns.get(c).name());
+            header.writeInt(blobs.get(c).length);
+        }
+        header.flush();
+
+        Path target = directory.resolve(name + SUFFIX);
+        Path temp = directory.resolve(name + SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel))) {
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+            for (byte[] blob : blobs) {
+                out.write(blob);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return readHeader(target);
+    }
+
+    static Header readHeader(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            int length = file.readInt();
+            byte[] bytes = new byte[length];
+            file.readFully(bytes);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an archive segment: " + path);
+            }
+            String table = in.readUTF();
+            int rows = in.readInt();
+            LocalDateTime minCreatedAt = fromMicros(in.readLong());
+            LocalDateTime maxCreatedAt = fromMicros(in.readLong());
+            String minAccount = in.readUTF();
+            String maxAccount = in.readUTF();
+            UUID minId = readUuid(in);
+            UUID maxId = readUuid(in);
+
+            Map<String, long[]> columns = new LinkedHashMap<>();
+            long offset = 4L + length;
+            int count = in.readInt();
+            for (int c = 0; c < count; c++) {
+                String column = in.readUTF();
+                int size = in.readInt();
+                columns.put(column, new long[]{offset, size});
+                offset += size;
+            }
+            return new Header(path, table, rows, minCreatedAt, maxCreatedAt, minAccount, maxAccount,
+                    minId, maxId, columns);
+        }
+    }
+
+    /**
+     * Decompresses one column of the segment into an array with one value per row.
+     */
+    static Object[] readColumn(Header header, Column column) throws IOException {
+        long[] location = header.columns().get(column.name());
+        byte[] blob = new byte[(int) location[1]];
+        try (RandomAccessFile file = new RandomAccessFile(header.path().toFile(), "r")) {
+            file.seek(location[0]);
+            file.readFully(blob);
+        }
+
+        Object[] values = new Object[header.rows()];
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(blob)))) {
+            long previous = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (!in.readBoolean()) {
+                    continue;
+                }
+                switch (column.type()) {
+                    case UUID -> values[i] = readUuid(in);
+                    case STRING -> values[i] = in.readUTF();
+                    case DECIMAL -> values[i] = new BigDecimal(in.readUTF());
+                    case TIMESTAMP -> {
+                        previous += in.readLong();
+                        values[i] = fromMicros(previous);
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    static int compareUuids(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    // ====== Helpers ======
+
+    private static byte[] encode(Type type, List<Object[]> rows, int column) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes, 64 * 1024))) {
+            long previous = 0;
+            for (Object[] row : rows) {
+                Object value = row[column];
+                out.writeBoolean(value != null);
+                if (value == null) {
+                    continue;
+                }
+                switch (type) {
+                    case UUID -> writeUuid(out, (UUID) value);
+                    case STRING -> out.writeUTF((String) value);
+                    case DECIMAL -> out.writeUTF(((BigDecimal) value).toPlainString());
+                    case TIMESTAMP -> {
+                        long micros = toMicros((LocalDateTime) value);
+                        out.writeLong(micros - previous);
+                        previous = micros;
+                    }
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int indexOf(List<Column> columns, String name) {
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).name().equals(name)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("No column " + name);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID value) throws IOException {
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    // created_at is a timestamp without time zone; UTC is only used as a fixed reference
+    private static long toMicros(LocalDateTime value) {
+        return value.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + value.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+}
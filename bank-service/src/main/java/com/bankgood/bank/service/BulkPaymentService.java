@@ -0,0 +1,311 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.config.ShardContext;
+import com.bankgood.bank.event.BulkPaymentLineResult;
+import com.bankgood.bank.event.BulkPaymentResult;
+import com.bankgood.bank.event.OutgoingTransactionEvent;
+import com.bankgood.bank.event.ReserveFundsResult;
+import com.bankgood.bank.model.TransactionStatus;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bulk outgoing payments (payroll and supplier runs).
+ *
+ * The request body is read with a streaming JSON parser, every line is
+ * validated, the total of the valid lines is reserved against the debit
+ * account once, and the transactions and their outbox rows are written with
+ * JDBC batch inserts in the same database transaction, on the debit
+ * account's shard. The body is parsed before that transaction starts.
+ *
+ * Submissions are idempotent. The batch id derives from the debit account
+ * and the Idempotency-Key header, or the SHA-256 of the body without one, and
+ * line ids derive from the batch id, line number and the batch's time. A
+ * resubmitted file (for example after a client timeout) finds its row in
+ * bulk_payment_batches and gets the existing batch back instead of being
+ * reserved and paid again. A batch rejected for insufficient funds is not
+ * recorded, so it can be resubmitted.
+ *
+ * Expected body:
+ * {"fromAccountNumber": "...", "payments": [{"toBankgoodNumber": "...", "amount": 12.50}, ...]}
+ */
+@Slf4j
+@Service
+public class BulkPaymentService {
+
+    private static final String TOPIC_INITIATED = "transactions.initiated";
+    private static final int JDBC_BATCH_SIZE = 1000;
+
+    private static final String INSERT_TRANSACTION = "INSERT INTO outgoing_transactions "
+            + "(transaction_id, from_clearing_number, from_account_number, to_bankgood_number, amount, status, "
+            + "batch_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Blocks on a concurrent submission of the same batch until it commits or rolls back
+    private static final String CLAIM_BATCH = "INSERT INTO bulk_payment_batches "
+            + "(batch_id, from_account_number, content_hash, created_at) VALUES (?, ?, ?, ?) "
+            + "ON CONFLICT (batch_id) DO NOTHING";
+
+    private static final String FIND_BATCH = "SELECT content_hash, created_at FROM bulk_payment_batches "
+            + "WHERE batch_id = ?";
+
+    private static final String FIND_STATUSES = "SELECT transaction_id, status FROM outgoing_transactions "
+            + "WHERE transaction_id = ANY(?)";
+
+    private static final String INSERT_OUTBOX = "INSERT INTO outbox_events "
+            + "(id, transaction_id, topic, message_key, payload, published, created_at) "
+            + "VALUES (nextval('outbox_events_seq'), ?, ?, ?, ?, false, ?)";
+
+    @Value("${BANK_CLEARING_NUMBER}")
+    private String fromClearingNumber;
+
+    @Value("${bank.bulk-payments.max-lines:100000}")
+    private int maxLines;
+
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final AccountService accountService;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    public BulkPaymentService(ObjectMapper objectMapper, JdbcTemplate jdbcTemplate, AccountService accountService,
+                              PlatformTransactionManager transactionManager, ShardRouter shardRouter) {
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.accountService = accountService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * @param idempotencyKey the client's key for this file, or null to key it by its content
+     */
+    public BulkPaymentResult submit(InputStream body, String idempotencyKey) {
+        MessageDigest digest = sha256();
+        String fromAccountNumber = null;
+        List<BulkPaymentLineResult> results = new ArrayList<>();
+        List<OutgoingTransactionEvent> valid = new ArrayList<>();
+        List<BulkPaymentLineResult> accepted = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(new DigestInputStream(body, digest))) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("fromAccountNumber".equals(field)) {
+                    fromAccountNumber = parser.getValueAsString();
+                } else if ("payments".equals(field)) {
+                    expect(parser.currentToken(), JsonToken.START_ARRAY);
+                    int line = 0;
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        if (++line > maxLines) {
+                            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                                    "A batch may contain at most " + maxLines + " payments");
+                        }
+                        OutgoingTransactionEvent payment = objectMapper.readValue(parser, OutgoingTransactionEvent.class);
+                        String reason = validate(payment);
+                        if (reason != null) {
+                            results.add(new BulkPaymentLineResult(line, null, TransactionStatus.FAILED, reason));
+                            continue;
+                        }
+                        BulkPaymentLineResult result = new BulkPaymentLineResult(line, null,
+                                TransactionStatus.PENDING, "Accepted");
+                        valid.add(payment);
+                        accepted.add(result);
+                        results.add(result);
+                        total = total.add(payment.getAmount());
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed bulk payment body: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Could not read bulk payment body");
+        }
+
+        if (fromAccountNumber == null || fromAccountNumber.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fromAccountNumber is required");
+        }
+
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+        String key = idempotencyKey != null && !idempotencyKey.isBlank()
+                ? "key:" + idempotencyKey : "sha256:" + contentHash;
+        UUID batchId = UUID.nameUUIDFromBytes(
+                (fromAccountNumber + "/" + key).getBytes(StandardCharsets.UTF_8));
+
+        String debitAccount = fromAccountNumber;
+        BigDecimal debitTotal = total;
+        return shardRouter.forAccount(debitAccount, () -> transactionTemplate.execute(status ->
+                reserveAndInsert(status, batchId, contentHash, debitAccount, debitTotal, valid, accepted, results)));
+    }
+
+    // ====== Helpers ======
+
+    private BulkPaymentResult reserveAndInsert(TransactionExecution transaction, UUID batchId, String contentHash,
+                                               String fromAccountNumber, BigDecimal total,
+                                               List<OutgoingTransactionEvent> valid,
+                                               List<BulkPaymentLineResult> accepted,
+                                               List<BulkPaymentLineResult> results) {
+        if (!valid.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+            if (jdbcTemplate.update(CLAIM_BATCH, batchId, fromAccountNumber, contentHash, now) == 0) {
+                return resubmitted(batchId, contentHash, fromAccountNumber, total, valid, accepted, results);
+            }
+            // One reservation for the whole batch instead of one per payment
+            ReserveFundsResult reservation = accountService.reserveFunds(fromAccountNumber, total);
+            if (!reservation.isSuccess()) {
+                log.info("Rejected batch {}: {}", batchId, reservation.getMessage());
+                // Drops the claim as well, so the file can be sent again
+                transaction.setRollbackOnly();
+                for (BulkPaymentLineResult result : accepted) {
+                    result.setStatus(TransactionStatus.FAILED);
+                    result.setMessage(reservation.getMessage());
+                }
+                return new BulkPaymentResult(batchId, fromAccountNumber, 0, results.size(), BigDecimal.ZERO, results);
+            }
+            assignIds(batchId, now, valid, accepted);
+            insertTransactions(batchId, fromAccountNumber, now, valid);
+        }
+
+        log.info("Accepted batch {} with {} payments ({} rejected) totalling {}",
+                batchId, valid.size(), results.size() - valid.size(), total);
+        return new BulkPaymentResult(batchId, fromAccountNumber, valid.size(), results.size() - valid.size(),
+                total, results);
+    }
+
+    private BulkPaymentResult resubmitted(UUID batchId, String contentHash, String fromAccountNumber,
+                                          BigDecimal total, List<OutgoingTransactionEvent> valid,
+                                          List<BulkPaymentLineResult> accepted,
+                                          List<BulkPaymentLineResult> results) {
+        Map<String, Object> batch = jdbcTemplate.queryForMap(FIND_BATCH, batchId);
+        if (!contentHash.equals(batch.get("content_hash"))) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different batch");
+        }
+        assignIds(batchId, ((Timestamp) batch.get("created_at")).toLocalDateTime(), valid, accepted);
+
+        Map<UUID, TransactionStatus> statuses = new HashMap<>();
+        jdbcTemplate.query(FIND_STATUSES, rs -> {
+            statuses.put(rs.getObject(1, UUID.class), TransactionStatus.valueOf(rs.getString(2)));
+        }, (Object) valid.stream().map(OutgoingTransactionEvent::getTransactionId).toArray(UUID[]::new));
+        for (BulkPaymentLineResult result : accepted) {
+            result.setStatus(statuses.getOrDefault(result.getTransactionId(), result.getStatus()));
+            result.setMessage("Already submitted");
+        }
+
+        log.info("Batch {} was already submitted; returning it unchanged", batchId);
+        return new BulkPaymentResult(batchId, fromAccountNumber, valid.size(), results.size() - valid.size(),
+                total, results);
+    }
+
+    // Ids carry the debit account's shard bucket
+    private void assignIds(UUID batchId, LocalDateTime createdAt, List<OutgoingTransactionEvent> valid,
+                           List<BulkPaymentLineResult> accepted) {
+        long epochMillis = Timestamp.valueOf(createdAt).getTime();
+        for (int i = 0; i < valid.size(); i++) {
+            BulkPaymentLineResult result = accepted.get(i);
+            UUID id = ShardContext.nameId(epochMillis,
+                    (batchId + "/" + result.getLine()).getBytes(StandardCharsets.UTF_8));
+            valid.get(i).setTransactionId(id);
+            result.setTransactionId(id);
+        }
+    }
+
+    private String validate(OutgoingTransactionEvent payment) {
+        if (payment.getToBankgoodNumber() == null || payment.getToBankgoodNumber().isBlank()) {
+            return "toBankgoodNumber is required";
+        }
+        if (payment.getAmount() == null || payment.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return "Amount must be above 0";
+        }
+        return null;
+    }
+
+    private void insertTransactions(UUID batchId, String fromAccountNumber, LocalDateTime now,
+                                    List<OutgoingTransactionEvent> payments) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        List<String> payloads = new ArrayList<>(payments.size());
+
+        for (OutgoingTransactionEvent payment : payments) {
+            payment.setFromClearingNumber(fromClearingNumber);
+            payment.setFromAccountNumber(fromAccountNumber);
+            payment.setStatus(TransactionStatus.PENDING);
+            payment.setCreatedAt(now);
+            payment.setUpdatedAt(now);
+            try {
+                payloads.add(objectMapper.writeValueAsString(payment));
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Failed to process outbox event", e);
+            }
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION, payments, JDBC_BATCH_SIZE, (ps, payment) -> {
+            ps.setObject(1, payment.getTransactionId());
+            ps.setString(2, fromClearingNumber);
+            ps.setString(3, fromAccountNumber);
+            ps.setString(4, payment.getToBankgoodNumber());
+            ps.setBigDecimal(5, payment.getAmount());
+            ps.setString(6, TransactionStatus.PENDING.name());
+            ps.setObject(7, batchId);
+            ps.setTimestamp(8, timestamp);
+            ps.setTimestamp(9, timestamp);
+        });
+
+        List<Object[]> outboxRows = new ArrayList<>(payments.size());
+        for (int i = 0; i < payments.size(); i++) {
+            outboxRows.add(new Object[] {
+                    payments.get(i).getTransactionId(), TOPIC_INITIATED, fromClearingNumber, payloads.get(i), timestamp });
+        }
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX, outboxRows, JDBC_BATCH_SIZE, (ps, row) -> {
+            for (int column = 0; column < row.length; column++) {
+                ps.setObject(column + 1, row[column]);
+            }
+        });
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void expect(JsonToken actual, JsonToken expected) {
+        if (actual != expected) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Malformed bulk payment body: expected " + expected + " but found " + actual);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.config.ShardContext;
+import com.bankgood.bank.event.EodRunReport;
+import com.bankgood.bank.model.EodChunk;
+import com.bankgood.bank.model.EodRun;
+import com.bankgood.bank.model.EodStatus;
+import com.bankgood.bank.repository.EodChunkRepository;
+import com.bankgood.bank.repository.EodRunRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-of-day engine: daily interest accrual and account fees.
+ *
+ * A run splits the accounts table into account-id ranges of about chunk-size
+ * accounts and applies every range with one set-based UPDATE on a pool of
+ * worker threads. Each chunk is claimed with SKIP LOCKED and marked COMPLETED
+ * in the transaction that applies it, so an interrupted run resumes with the
+ * remaining chunks, and several pods can work on the same run without posting
+ * anything twice.
+ *
+ * With several shards every shard has its own run for the date; they are
+ * processed one shard after another and reported as one.
+ */
+@Slf4j
+@Service
+public class EodService {
+
+    private static final String CHUNK_STARTS = "SELECT account_id FROM "
+            + "(SELECT account_id, row_number() OVER (ORDER BY account_id) AS rn FROM accounts) t "
+            + "WHERE (rn - 1) % ? = 0 ORDER BY account_id";
+
+    private static final String CLAIM_CHUNK = "SELECT id FROM eod_chunks WHERE id = ? AND status = 'PENDING' "
+            + "FOR UPDATE SKIP LOCKED";
+
+    // Rows are locked in id order by the calc CTE, so the balance used for interest is the one being updated
+    private static final String APPLY_CHUNK = "WITH calc AS ("
+            + "  SELECT account_id, balance, reserved_balance, round(balance * ?, 2) AS interest "
+            + "  FROM accounts WHERE %s ORDER BY account_id FOR UPDATE), "
+            + "charges AS ("
+            + "  SELECT account_id, interest, "
+            + "  CASE WHEN balance + interest - reserved_balance >= ? THEN ? ELSE 0 END AS fee FROM calc), "
+            + "upd AS ("
+            + "  UPDATE accounts a SET balance = a.balance + c.interest - c.fee, "
+            + "  version = coalesce(a.version, 0) + 1, updated_at = now() "
+            + "  FROM charges c WHERE a.account_id = c.account_id AND (c.interest <> 0 OR c.fee <> 0) "
+            + "  RETURNING a.account_id, c.interest, c.fee), "
+            + "postings AS ("
+            + "  SELECT gen_random_uuid() AS posting_id, account_id, interest AS amount, 'INTEREST' AS entry_type, "
+            + "  '" + LedgerService.INTEREST_EXPENSE + "'::uuid AS contra_id FROM upd WHERE interest <> 0 "
+            + "  UNION ALL "
+            + "  SELECT gen_random_uuid(), account_id, -fee, 'FEE', '" + LedgerService.FEE_INCOME + "'::uuid "
+            + "  FROM upd WHERE fee <> 0), "
+            + "ledger AS (" + LedgerService.INSERT_POSTINGS.formatted("postings") + ") "
+            + "SELECT (SELECT count(*) FROM calc) AS accounts, "
+            + "coalesce(sum(interest), 0) AS interest, coalesce(sum(fee), 0) AS fees FROM upd";
+
+    private static final String COMPLETE_CHUNK = "UPDATE eod_chunks SET status = 'COMPLETED', accounts_processed = ?, "
+            + "interest_posted = ?, fees_charged = ?, completed_at = now() WHERE id = ?";
+
+    private static final String COMPLETE_RUN = "UPDATE eod_runs r SET status = 'COMPLETED', finished_at = now(), "
+            + "accounts_processed = s.accounts, interest_posted = s.interest, fees_charged = s.fees "
+            + "FROM (SELECT coalesce(sum(accounts_processed), 0) AS accounts, coalesce(sum(interest_posted), 0) AS interest, "
+            + "coalesce(sum(fees_charged), 0) AS fees FROM eod_chunks WHERE run_id = ?) s "
+            + "WHERE r.id = ? AND r.status <> 'COMPLETED'";
+
+    @Value("${bank.eod.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bank.eod.chunk-size:10000}")
+    private int chunkSize;
+
+    @Value("${bank.eod.parallelism:4}")
+    private int parallelism;
+
+    @Value("${bank.eod.interest-rate-annual:0.01}")
+    private BigDecimal annualInterestRate;
+
+    @Value("${bank.eod.daily-fee:0.00}")
+    private BigDecimal dailyFee;
+
+    private final EodRunRepository runRepository;
+    private final EodChunkRepository chunkRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountReadModel readModel;
+    private final ShardRouter shardRouter;
+
+    private final AtomicBoolean active = new AtomicBoolean(false);
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "eod-coordinator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public EodService(EodRunRepository runRepository, EodChunkRepository chunkRepository, JdbcTemplate jdbcTemplate,
+                      PlatformTransactionManager transactionManager, AccountReadModel readModel,
+                      ShardRouter shardRouter) {
+        this.runRepository = runRepository;
+        this.chunkRepository = chunkRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readModel = readModel;
+        this.shardRouter = shardRouter;
+    }
+
+    // ===================== TRIGGERS =====================
+
+    @Scheduled(cron = "${bank.eod.cron:0 5 0 * * *}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+        // Runs on the coordinator thread; the shared scheduler thread also drives the outbox publisher
+        try {
+            start(LocalDate.now().minusDays(1));
+        } catch (ResponseStatusException e) {
+            log.warn("Skipping scheduled end-of-day run, another run is in progress");
+        }
+    }
+
+    /**
+     * Creates or resumes the run for the business date and processes it in the
+     * background. Returns the run as it is before processing starts.
+     */
+    public EodRunReport start(LocalDate businessDate) {
+        if (!active.compareAndSet(false, true)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "An end-of-day run is already in progress");
+        }
+        List<EodRun> runs;
+        List<EodRunReport> reports;
+        try {
+            runs = shardRouter.gather(() -> prepare(businessDate));
+            reports = new ArrayList<>(runs.size());
+            for (int shard = 0; shard < runs.size(); shard++) {
+                EodRun run = runs.get(shard);
+                reports.add(shardRouter.onShard(shard, () -> toReport(run)));
+            }
+        } catch (RuntimeException e) {
+            active.set(false);
+            throw e;
+        }
+
+        if (runs.stream().allMatch(run -> run.getStatus() == EodStatus.COMPLETED)) {
+            active.set(false);
+        } else {
+            coordinator.execute(() -> {
+                try {
+                    for (int shard = 0; shard < runs.size(); shard++) {
+                        EodRun run = runs.get(shard);
+                        if (run.getStatus() != EodStatus.COMPLETED) {
+                            shardRouter.onShard(shard, () -> execute(run));
+                        }
+                    }
+                } finally {
+                    active.set(false);
+                }
+            });
+        }
+        return combine(reports);
+    }
+
+    public Optional<EodRunReport> getRun(LocalDate businessDate) {
+        List<EodRunReport> reports = shardRouter.gather(() -> runRepository.findByBusinessDate(businessDate)
+                        .map(this::toReport)).stream()
+                .flatMap(Optional::stream)
+                .toList();
+        return reports.isEmpty() ? Optional.empty() : Optional.of(combine(reports));
+    }
+
+    // ===================== RUN =====================
+
+    private EodRun prepare(LocalDate businessDate) {
+        try {
+            return transactionTemplate.execute(status -> {
+                EodRun existing = runRepository.findByBusinessDate(businessDate).orElse(null);
+                if (existing != null) {
+                    if (existing.getStatus() == EodStatus.FAILED) {
+                        existing.setStatus(EodStatus.RUNNING);
+                        log.info("Resuming end-of-day run for {}", businessDate);
+                    }
+                    return runRepository.save(existing);
+                }
+                return createRun(businessDate);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another pod created the run for this date first
+            return runRepository.findByBusinessDate(businessDate).orElseThrow(() -> e);
+        }
+    }
+
+    private EodRun createRun(LocalDate businessDate) {
+        EodRun run = runRepository.saveAndFlush(new EodRun(businessDate));
+        List<UUID> starts = jdbcTemplate.queryForList(CHUNK_STARTS, UUID.class, chunkSize);
+
+        // The first and last ranges are open, so accounts created during the run are still covered
+        List<EodChunk> chunks = new ArrayList<>();
+        int count = Math.max(starts.size(), 1);
+        for (int i = 0; i < count; i++) {
+            UUID from = i == 0 ? null : starts.get(i);
+            UUID to = i + 1 < starts.size() ? starts.get(i + 1) : null;
+            chunks.add(new EodChunk(run.getId(), i, from, to));
+        }
+        chunkRepository.saveAll(chunks);
+        run.setChunkCount(chunks.size());
+        log.info("Created end-of-day run for {} with {} chunks", businessDate, chunks.size());
+        return runRepository.save(run);
+    }
+
+    private void execute(EodRun run) {
+        long started = System.currentTimeMillis();
+        List<EodChunk> pending = chunkRepository.findByRunIdAndStatusOrderByChunkNo(run.getId(), EodStatus.PENDING);
+        BigDecimal dailyRate = annualInterestRate.divide(BigDecimal.valueOf(365), MathContext.DECIMAL64);
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "eod-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int failed = 0;
+        // Workers run on their own threads; hand them the run's shard
+        int shard = ShardContext.shard();
+        try {
+            List<Future<?>> futures = new ArrayList<>(pending.size());
+            for (EodChunk chunk : pending) {
+                futures.add(workers.submit(() -> shardRouter.onShard(shard, () -> processChunk(chunk, dailyRate))));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.error("End-of-day chunk failed for {}", run.getBusinessDate(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failed++;
+                    break;
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        finish(run, failed);
+        readModel.evictAll();
+        log.info("End-of-day run for {} processed {} chunks ({} failed) in {} ms",
+                run.getBusinessDate(), pending.size(), failed, System.currentTimeMillis() - started);
+    }
+
+    private void processChunk(EodChunk chunk, BigDecimal dailyRate) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> claimed = jdbcTemplate.queryForList(CLAIM_CHUNK, Long.class, chunk.getId());
+            if (claimed.isEmpty()) {
+                // Completed already, or being processed by another pod
+                return;
+            }
+
+            List<Object> args = new ArrayList<>();
+            args.add(dailyRate);
+            String range = rangeCondition(chunk, args);
+            args.add(dailyFee);
+            args.add(dailyFee);
+
+            Map<String, Object> totals = jdbcTemplate.queryForMap(String.format(APPLY_CHUNK, range), args.toArray());
+            jdbcTemplate.update(COMPLETE_CHUNK,
+                    ((Number) totals.get("accounts")).longValue(),
+                    totals.get("interest"),
+                    totals.get("fees"),
+                    chunk.getId());
+        });
+    }
+
+    private void finish(EodRun run, int failed) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (chunkRepository.countByRunIdAndStatusNot(run.getId(), EodStatus.COMPLETED) == 0) {
+                jdbcTemplate.update(COMPLETE_RUN, run.getId(), run.getId());
+            } else if (failed > 0) {
+                jdbcTemplate.update("UPDATE eod_runs SET status = 'FAILED' WHERE id = ? AND status = 'RUNNING'", run.getId());
+            }
+            // Otherwise another pod still holds chunks and completes the run
+        });
+    }
+
+    // ====== Helpers ======
+
+    // Separate statements per bound shape keep the predicate index-friendly
+    private String rangeCondition(EodChunk chunk, List<Object> args) {
+        List<String> conditions = new ArrayList<>(2);
+        if (chunk.getFromAccountId() != null) {
+            conditions.add("account_id >= ?");
+            args.add(chunk.getFromAccountId());
+        }
+        if (chunk.getToAccountId() != null) {
+            conditions.add("account_id < ?");
+            args.add(chunk.getToAccountId());
+        }
+        return conditions.isEmpty() ? "true" : String.join(" AND ", conditions);
+    }
+
+    // The runs of all shards as one report; a single shard's report is returned as is
+    private EodRunReport combine(List<EodRunReport> reports) {
+        if (reports.size() == 1) {
+            return reports.get(0);
+        }
+        EodRunReport combined = new EodRunReport();
+        combined.setBusinessDate(reports.get(0).getBusinessDate());
+        combined.setStatus(EodStatus.COMPLETED);
+        combined.setInterestPosted(BigDecimal.ZERO);
+        combined.setFeesCharged(BigDecimal.ZERO);
+        boolean finished = true;
+        for (EodRunReport report : reports) {
+            if (report.getStatus() == EodStatus.FAILED) {
+                combined.setStatus(EodStatus.FAILED);
+            } else if (report.getStatus() != EodStatus.COMPLETED && combined.getStatus() != EodStatus.FAILED) {
+                combined.setStatus(EodStatus.RUNNING);
+            }
+            combined.setChunkCount(combined.getChunkCount() + report.getChunkCount());
+            combined.setChunksCompleted(combined.getChunksCompleted() + report.getChunksCompleted());
+            combined.setAccountsProcessed(combined.getAccountsProcessed() + report.getAccountsProcessed());
+            if (report.getInterestPosted() != null) {
+                combined.setInterestPosted(combined.getInterestPosted().add(report.getInterestPosted()));
+            }
+            if (report.getFeesCharged() != null) {
+                combined.setFeesCharged(combined.getFeesCharged().add(report.getFeesCharged()));
+            }
+            if (combined.getStartedAt() == null || (report.getStartedAt() != null
+                    && report.getStartedAt().isBefore(combined.getStartedAt()))) {
+                combined.setStartedAt(report.getStartedAt());
+            }
+            if (report.getFinishedAt() == null) {
+                finished = false;
+            } else if (combined.getFinishedAt() == null || report.getFinishedAt().isAfter(combined.getFinishedAt())) {
+                combined.setFinishedAt(report.getFinishedAt());
+            }
+        }
+        if (!finished) {
+            combined.setFinishedAt(null);
+        }
+        return combined;
+    }
+
+    private EodRunReport toReport(EodRun run) {
+        return new EodRunReport(
+                run.getBusinessDate(),
+                run.getStatus(),
+                run.getChunkCount(),
+                chunkRepository.countByRunIdAndStatus(run.getId(), EodStatus.COMPLETED),
+                run.getAccountsProcessed(),
+                run.getInterestPosted(),
+                run.getFeesCharged(),
+                run.getStartedAt(),
+                run.getFinishedAt());
+    }
+}
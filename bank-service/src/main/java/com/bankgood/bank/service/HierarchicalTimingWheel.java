@@ -0,0 +1,106 @@
+package com.bankgood.bank.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck). Adding an entry and
+ * advancing one tick are O(1) regardless of how many entries are waiting.
+ *
+ * Level 0 has one slot per tick; each higher level has one slot per full
+ * rotation of the level below. Entries in a higher level are cascaded down
+ * when the wheel enters their slot. Entries beyond the top level's range
+ * wait in its last lap and are cascaded again until they are due.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickMs;
+    private final int levels;
+    private final List<List<List<Entry<T>>>> wheels = new ArrayList<>();
+    private final List<T> due = new ArrayList<>();
+
+    private long currentTick;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMs, int levels, long nowMs) {
+        this.tickMs = tickMs;
+        this.levels = levels;
+        this.currentTick = nowMs / tickMs;
+        for (int level = 0; level < levels; level++) {
+            List<List<Entry<T>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new ArrayList<>());
+            }
+            wheels.add(slots);
+        }
+    }
+
+    public synchronized void add(T item, long deadlineMs) {
+        size++;
+        // Round up so an entry never fires before its deadline
+        place(new Entry<>(item, Math.floorDiv(deadlineMs + tickMs - 1, tickMs)));
+    }
+
+    /**
+     * Moves the wheel to nowMs and returns every entry whose deadline has passed.
+     */
+    public synchronized List<T> advance(long nowMs) {
+        long targetTick = nowMs / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade from the top so entries can fall through several levels in one tick
+            for (int level = levels - 1; level >= 1; level--) {
+                int shift = SLOT_BITS * level;
+                if ((currentTick & ((1L << shift) - 1)) == 0) {
+                    cascade(wheels.get(level).get((int) ((currentTick >>> shift) & MASK)));
+                }
+            }
+            cascade(wheels.get(0).get((int) (currentTick & MASK)));
+        }
+
+        List<T> expired = new ArrayList<>(due);
+        size -= expired.size();
+        due.clear();
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.deadlineTick - currentTick;
+        if (delta <= 0) {
+            due.add(entry.item);
+            return;
+        }
+        for (int level = 0; level < levels; level++) {
+            int shift = SLOT_BITS * (level + 1);
+            if (delta < (1L << shift) || level == levels - 1) {
+                long levelTick = entry.deadlineTick >>> (SLOT_BITS * level);
+                if (level == levels - 1 && delta >= (1L << shift)) {
+                    // Out of range: park one rotation ahead and cascade again from there
+                    levelTick = (currentTick >>> (SLOT_BITS * level)) + MASK;
+                }
+                wheels.get(level).get((int) (levelTick & MASK)).add(entry);
+                return;
+            }
+        }
+    }
+
+    private void cascade(List<Entry<T>> slot) {
+        if (slot.isEmpty()) {
+            return;
+        }
+        List<Entry<T>> entries = new ArrayList<>(slot);
+        slot.clear();
+        entries.forEach(this::place);
+    }
+
+    private record Entry<T>(T item, long deadlineTick) {
+    }
+}
@@ -0,0 +1,179 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.event.LedgerBalance;
+import com.bankgood.bank.model.Account;
+import com.bankgood.bank.model.LedgerEntry;
+import com.bankgood.bank.model.LedgerEntryType;
+import com.bankgood.bank.model.UuidV7;
+import com.bankgood.bank.repository.AccountRepository;
+import com.bankgood.bank.repository.LedgerEntryRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Append-only double-entry ledger behind accounts.balance, with periodic
+ * per-account balance checkpoints.
+ *
+ * Every balance change is posted as two ledger_entries rows in the same
+ * transaction as the change itself: one on the customer account and an equal
+ * and opposite one on one of the internal accounts below, so the ledger as a
+ * whole always sums to zero.
+ *
+ * The checkpoint job stores, for every account with new entries, its balance
+ * as of a point checkpoint-lag-ms in the past; the lag leaves time for
+ * transactions that stamped an entry just before the job ran to commit. The
+ * balance at any time T is then the latest checkpoint at or before T plus the
+ * entries between it and T, a scan bounded by the checkpoint interval.
+ */
+@Slf4j
+@Service
+@DependsOn("entityManagerFactory")
+public class LedgerService {
+
+    // Internal accounts on the other side of every posting
+    public static final UUID CLEARING = new UUID(0, 1);         // payments to and from other banks
+    public static final UUID CASH = new UUID(0, 2);             // manual deposits
+    public static final UUID INTEREST_EXPENSE = new UUID(0, 3);
+    public static final UUID FEE_INCOME = new UUID(0, 4);
+    public static final UUID OPENING_EQUITY = new UUID(0, 5);   // balances accounts were opened or imported with
+
+    /**
+     * Inserts both legs for every row of the relation %s, which must have the
+     * columns (posting_id, account_id, amount, entry_type, contra_id). For
+     * services that change balances in set-based SQL; used as a CTE.
+     */
+    static final String INSERT_POSTINGS = "INSERT INTO ledger_entries "
+            + "(id, posting_id, account_id, amount, entry_type, created_at) "
+            + "SELECT nextval('ledger_entries_seq'), p.posting_id, l.account_id, l.amount, p.entry_type, now() "
+            + "FROM %s p CROSS JOIN LATERAL (VALUES (p.account_id, p.amount), (p.contra_id, -p.amount)) "
+            + "l(account_id, amount)";
+
+    private static final String CREATE_CREATED_INDEX = "CREATE INDEX IF NOT EXISTS brin_ledger_created "
+            + "ON ledger_entries USING brin (created_at)";
+
+    // Accounts that had a balance before the ledger existed
+    private static final String SEED_OPENING = "WITH postings AS ("
+            + "  SELECT gen_random_uuid() AS posting_id, a.account_id, a.balance AS amount, "
+            + "  'OPENING' AS entry_type, '" + OPENING_EQUITY + "'::uuid AS contra_id FROM accounts a "
+            + "  WHERE a.balance <> 0 AND NOT EXISTS (SELECT 1 FROM ledger_entries e WHERE e.account_id = a.account_id)) "
+            + INSERT_POSTINGS.formatted("postings");
+
+    // The base is the latest checkpoint at or before the previous run, so concurrent runs never double count
+    private static final String CHECKPOINT = "WITH delta AS ("
+            + "  SELECT account_id, sum(amount) AS amount FROM ledger_entries "
+            + "  WHERE created_at > ? AND created_at <= ? GROUP BY account_id) "
+            + "INSERT INTO ledger_checkpoints (account_id, as_of, balance) "
+            + "SELECT d.account_id, ?, coalesce(c.balance, 0) + d.amount FROM delta d "
+            + "LEFT JOIN LATERAL (SELECT balance FROM ledger_checkpoints "
+            + "  WHERE account_id = d.account_id AND as_of <= ? ORDER BY as_of DESC LIMIT 1) c ON true "
+            + "ON CONFLICT (account_id, as_of) DO NOTHING";
+
+    private static final String FIND_CHECKPOINT = "SELECT as_of, balance FROM ledger_checkpoints "
+            + "WHERE account_id = ? AND as_of <= ? ORDER BY as_of DESC LIMIT 1";
+
+    private static final String SUM_SINCE = "SELECT coalesce(sum(amount), 0) AS amount, count(*) AS entries "
+            + "FROM ledger_entries WHERE account_id = ? AND created_at > ? AND created_at <= ?";
+
+    private static final Timestamp BEGINNING = Timestamp.valueOf(LocalDateTime.of(1970, 1, 1, 0, 0));
+
+    @Value("${bank.ledger.checkpoint-lag-ms:60000}")
+    private long checkpointLagMs;
+
+    private final LedgerEntryRepository entryRepository;
+    private final AccountRepository accountRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    public LedgerService(LedgerEntryRepository entryRepository, AccountRepository accountRepository,
+                         JdbcTemplate jdbcTemplate, ShardRouter shardRouter) {
+        this.entryRepository = entryRepository;
+        this.accountRepository = accountRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+    }
+
+    // Runs after ddl-auto (entityManagerFactory) and before listeners start changing balances
+    @PostConstruct
+    public void initialize() {
+        shardRouter.forEachShard(() -> {
+            // Hibernate cannot declare BRIN indexes
+            jdbcTemplate.execute(CREATE_CREATED_INDEX);
+            int seeded = jdbcTemplate.update(SEED_OPENING) / 2;
+            if (seeded > 0) {
+                log.info("Posted opening ledger entries for {} accounts with existing balances", seeded);
+            }
+        });
+    }
+
+    /**
+     * Posts amount to the account and -amount to the internal contra account.
+     * Must be called in the transaction that changes the account's balance.
+     */
+    public void post(UUID accountId, BigDecimal amount, UUID contraAccountId, LedgerEntryType type,
+                     UUID transactionId) {
+        UUID postingId = UuidV7.generate();
+        LocalDateTime now = LocalDateTime.now();
+        entryRepository.saveAll(List.of(
+                new LedgerEntry(null, postingId, accountId, amount, type, transactionId, now),
+                new LedgerEntry(null, postingId, contraAccountId, amount.negate(), type, transactionId, now)));
+    }
+
+    // ===================== CHECKPOINTS =====================
+
+    // Every shard checkpoints the accounts it holds
+    @Scheduled(cron = "${bank.ledger.checkpoint-cron:0 0 * * * *}")
+    public void checkpoint() {
+        shardRouter.forEachShard(this::checkpointShard);
+    }
+
+    private void checkpointShard() {
+        LocalDateTime latest = jdbcTemplate.queryForObject("SELECT max(as_of) FROM ledger_checkpoints",
+                LocalDateTime.class);
+        Timestamp previous = latest != null ? Timestamp.valueOf(latest) : BEGINNING;
+        Timestamp asOf = Timestamp.valueOf(LocalDateTime.now().minusNanos(checkpointLagMs * 1_000_000));
+        if (!asOf.after(previous)) {
+            return;
+        }
+        int accounts = jdbcTemplate.update(CHECKPOINT, previous, asOf, asOf, previous);
+        log.info("Checkpointed ledger balances of {} accounts as of {}", accounts, asOf);
+    }
+
+    // ===================== QUERIES =====================
+
+    @Transactional(readOnly = true)
+    public LedgerBalance getBalanceAt(String accountNumber, LocalDateTime at) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found"));
+
+        Timestamp until = Timestamp.valueOf(at);
+        List<Map<String, Object>> checkpoint = jdbcTemplate.queryForList(FIND_CHECKPOINT, account.getAccountId(), until);
+        LocalDateTime checkpointAt = null;
+        BigDecimal balance = BigDecimal.ZERO;
+        Timestamp since = BEGINNING;
+        if (!checkpoint.isEmpty()) {
+            since = (Timestamp) checkpoint.get(0).get("as_of");
+            checkpointAt = since.toLocalDateTime();
+            balance = (BigDecimal) checkpoint.get(0).get("balance");
+        }
+
+        Map<String, Object> delta = jdbcTemplate.queryForMap(SUM_SINCE, account.getAccountId(), since, until);
+        return new LedgerBalance(accountNumber, at, balance.add((BigDecimal) delta.get("amount")), checkpointAt,
+                ((Number) delta.get("entries")).longValue());
+    }
+}
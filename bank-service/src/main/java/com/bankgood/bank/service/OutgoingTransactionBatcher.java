@@ -0,0 +1,195 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.event.OutgoingTransactionEvent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in group commit for POST /bank/transaction/outgoing.
+ *
+ * Concurrent requests are queued for at most max-wait-ms or max-batch-size
+ * items and executed by one worker in a single database transaction, so many
+ * payments share one commit. If that transaction fails, each request of the
+ * batch is retried on its own, so one bad request never fails its neighbours.
+ * Callers block until their own request has committed. With several shards a
+ * batch commits once per shard its debit accounts live on.
+ */
+@Slf4j
+@Component
+public class OutgoingTransactionBatcher implements SmartLifecycle {
+
+    @Value("${bank.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bank.group-commit.max-batch-size:64}")
+    private int maxBatchSize;
+
+    @Value("${bank.group-commit.max-wait-ms:5}")
+    private long maxWaitMs;
+
+    @Value("${bank.group-commit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private final TransactionService transactionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    private BlockingQueue<Submission> queue;
+    private volatile boolean running = false;
+    private Thread worker;
+
+    public OutgoingTransactionBatcher(TransactionService transactionService,
+                                      PlatformTransactionManager transactionManager,
+                                      ShardRouter shardRouter) {
+        this.transactionService = transactionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Creates the outgoing transaction, through the group-commit queue when
+     * enabled. Exceptions thrown by TransactionService are rethrown unchanged.
+     */
+    public void createOutgoingTransaction(OutgoingTransactionEvent event) {
+        if (!running) {
+            create(event);
+            return;
+        }
+
+        Submission submission = new Submission(event, shardRouter.shardOf(event.getFromAccountNumber()));
+        if (!queue.offer(submission)) {
+            // Queue is full: fall back to a private transaction rather than rejecting
+            create(event);
+            return;
+        }
+
+        try {
+            submission.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // ===================== LIFECYCLE =====================
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        worker = new Thread(this::drain, "outgoing-group-commit");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Group commit enabled (max {} requests, {} ms)", maxBatchSize, maxWaitMs);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // ===================== WORKER =====================
+
+    private void drain() {
+        List<Submission> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Submission first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Submission next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                // One transaction per shard; the order within each shard is kept
+                batch.stream()
+                        .collect(Collectors.groupingBy(submission -> submission.shard, TreeMap::new, Collectors.toList()))
+                        .forEach((shard, submissions) -> shardRouter.onShard(shard, () -> execute(submissions)));
+            } catch (InterruptedException e) {
+                if (!running) {
+                    // Finish whatever is still queued before exiting
+                    continue;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<Submission> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    batch.forEach(submission -> create(submission.event)));
+            batch.forEach(submission -> submission.future.complete(null));
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.warn("Group commit of {} requests failed, retrying individually: {}", batch.size(), e.getMessage());
+        }
+
+        for (Submission submission : batch) {
+            try {
+                create(submission.event);
+                submission.future.complete(null);
+            } catch (RuntimeException e) {
+                submission.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Inside a batch this stays on the batch's shard and only sets the account's bucket for the new id
+    private void create(OutgoingTransactionEvent event) {
+        shardRouter.forAccount(event.getFromAccountNumber(), () -> transactionService.createOutgoingTransaction(event));
+    }
+
+    private static final class Submission {
+        private final OutgoingTransactionEvent event;
+        private final int shard;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Submission(OutgoingTransactionEvent event, int shard) {
+            this.event = event;
+            this.shard = shard;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.model.TransactionStatus;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Holds one connection per shard in LISTEN mode on the transaction_status
+ * channel and hands every notification to TransactionStatusNotifier. This is
+ * how a pod learns about status changes committed by the pod that consumed
+ * the Kafka response, without polling the transaction tables.
+ */
+@Slf4j
+@Component
+public class PostgresNotificationListener implements SmartLifecycle {
+
+    @Value("${bank.status-await.listen-enabled:true}")
+    private boolean enabled;
+
+    private final ShardRouter shardRouter;
+    private final TransactionStatusNotifier notifier;
+
+    private volatile boolean running = false;
+    private final List<Thread> workers = new ArrayList<>();
+
+    public PostgresNotificationListener(ShardRouter shardRouter, TransactionStatusNotifier notifier) {
+        this.shardRouter = shardRouter;
+        this.notifier = notifier;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            DataSource dataSource = shardRouter.dataSource(shard);
+            Thread worker = new Thread(() -> listen(dataSource),
+                    shardRouter.isSharded() ? "pg-status-listener-" + shard : "pg-status-listener");
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen(DataSource dataSource) {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + TransactionStatusNotifier.CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Listening for transaction status notifications");
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(5000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getParameter());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Status notification listener failed, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        try {
+            String[] parts = payload.split(":");
+            notifier.complete(UUID.fromString(parts[0]), TransactionStatus.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed status notification '{}'", payload);
+        }
+    }
+}
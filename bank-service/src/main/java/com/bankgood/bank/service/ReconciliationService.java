@@ -0,0 +1,462 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.config.BankConfig;
+import com.bankgood.bank.event.ReconciliationReport;
+import com.bankgood.bank.model.BreakType;
+import com.bankgood.bank.model.ReconciliationBreak;
+import com.bankgood.bank.model.ReconciliationRun;
+import com.bankgood.bank.model.ReconciliationStatus;
+import com.bankgood.bank.repository.ReconciliationBreakRepository;
+import com.bankgood.bank.repository.ReconciliationRunRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reconciles the bank's outgoing and incoming transactions against
+ * clearing's record of them.
+ *
+ * Both sides are streamed in transaction id order and merge-joined, so memory
+ * use does not depend on the number of rows: the bank's rows through one
+ * server-side cursor per shard, merged across shards, and clearing's through
+ * its CSV export (GET /clearing/transaction/export). Every disagreement is a
+ * break: a transaction missing on either side, or one whose status or amount
+ * differs. Breaks are stored per run, up to max-breaks; the counts are always
+ * complete.
+ *
+ * Ids are UUIDv7 on both sides, so an id range is a creation-time range. An
+ * incremental run covers the transactions created since the previous
+ * completed run up to settle-minutes ago, leaving in-flight transactions for
+ * the next run; a full run starts from the beginning. Runs must cover
+ * transactions that have not been archived yet (see TransactionArchiveService).
+ * Runs, breaks and the watermark are stored on shard 0.
+ */
+@Slf4j
+@Service
+public class ReconciliationService {
+
+    private static final String INSERT_BREAK = "INSERT INTO reconciliation_breaks (run_id, transaction_id, direction, "
+            + "type, bank_status, bank_amount, clearing_status, clearing_amount) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int BREAK_BATCH_SIZE = 500;
+
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    // Postgres orders uuids by their bytes, i.e. as two unsigned longs
+    private static final Comparator<UUID> ID_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    @Value("${bank.reconciliation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bank.reconciliation.clearing-url:http://bankgood-clearing-service:8080}")
+    private String clearingUrl;
+
+    @Value("${bank.reconciliation.settle-minutes:60}")
+    private long settleMinutes;
+
+    // How far back the first incremental run starts
+    @Value("${bank.reconciliation.initial-lookback-hours:24}")
+    private long initialLookbackHours;
+
+    @Value("${bank.reconciliation.fetch-size:10000}")
+    private int fetchSize;
+
+    @Value("${bank.reconciliation.max-breaks:100000}")
+    private long maxBreaks;
+
+    private final ReconciliationRunRepository runRepository;
+    private final ReconciliationBreakRepository breakRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final BankConfig bankConfig;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private final AtomicBoolean active = new AtomicBoolean(false);
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reconciliation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReconciliationService(ReconciliationRunRepository runRepository,
+                                 ReconciliationBreakRepository breakRepository, JdbcTemplate jdbcTemplate,
+                                 ShardRouter shardRouter, BankConfig bankConfig) {
+        this.runRepository = runRepository;
+        this.breakRepository = breakRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.bankConfig = bankConfig;
+    }
+
+    // ===================== TRIGGERS =====================
+
+    @Scheduled(cron = "${bank.reconciliation.cron:0 0 3 * * *}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            start(false);
+        } catch (ResponseStatusException e) {
+            log.warn("Skipping scheduled reconciliation: {}", e.getReason());
+        }
+    }
+
+    /**
+     * Creates a run and processes it in the background. Returns the run as it
+     * is before processing starts.
+     */
+    public ReconciliationReport start(boolean full) {
+        if (!active.compareAndSet(false, true)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A reconciliation run is already in progress");
+        }
+        ReconciliationRun run;
+        try {
+            run = shardRouter.onShard(0, () -> createRun(full));
+        } catch (RuntimeException e) {
+            active.set(false);
+            throw e;
+        }
+        coordinator.execute(() -> {
+            try {
+                execute(run);
+            } finally {
+                active.set(false);
+            }
+        });
+        return toReport(run);
+    }
+
+    public Optional<ReconciliationReport> getRun(Long runId) {
+        return shardRouter.onShard(0, () -> runRepository.findById(runId).map(this::toReport));
+    }
+
+    public List<ReconciliationBreak> getBreaks(Long runId, long afterId, int limit) {
+        return shardRouter.onShard(0, () -> breakRepository.findByRunIdAndIdGreaterThanOrderById(
+                runId, afterId, PageRequest.ofSize(limit)));
+    }
+
+    // ===================== RUN =====================
+
+    private ReconciliationRun createRun(boolean full) {
+        LocalDateTime to = LocalDateTime.now().minusMinutes(settleMinutes);
+        LocalDateTime from = full ? null : runRepository.findTopByStatusOrderByToTimeDesc(ReconciliationStatus.COMPLETED)
+                .map(ReconciliationRun::getToTime)
+                .orElse(to.minusHours(initialLookbackHours));
+        if (from != null && !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Transactions up to " + from + " are reconciled already");
+        }
+        return runRepository.save(new ReconciliationRun(from, to));
+    }
+
+    private void execute(ReconciliationRun run) {
+        long started = System.currentTimeMillis();
+        BreakWriter breaks = new BreakWriter(run.getId());
+        try {
+            for (Direction direction : Direction.values()) {
+                reconcile(direction, run, breaks);
+            }
+            breaks.flush();
+            run.setStatus(ReconciliationStatus.COMPLETED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.setStatus(ReconciliationStatus.FAILED);
+        } catch (IOException | SQLException | RuntimeException e) {
+            log.error("Reconciliation run {} failed", run.getId(), e);
+            run.setStatus(ReconciliationStatus.FAILED);
+        }
+        run.setFinishedAt(LocalDateTime.now());
+        shardRouter.onShard(0, () -> runRepository.save(run));
+
+        log.info("Reconciliation run {} {} in {} ms: {} bank rows, {} clearing rows, {} matched, {} missing in bank, "
+                        + "{} missing in clearing, {} status and {} amount mismatches",
+                run.getId(), run.getStatus(), System.currentTimeMillis() - started, run.getBankRows(),
+                run.getClearingRows(), run.getMatched(), run.getMissingInBank(), run.getMissingInClearing(),
+                run.getStatusMismatches(), run.getAmountMismatches());
+    }
+
+    private void reconcile(Direction direction, ReconciliationRun run, BreakWriter breaks)
+            throws IOException, SQLException, InterruptedException {
+        UUID from = run.getFromTime() != null ? lowestId(run.getFromTime()) : MIN_ID;
+        UUID to = lowestId(run.getToTime());
+
+        try (BankRows bank = new BankRows(direction, from, to);
+             ClearingRows clearing = new ClearingRows(direction, from, to)) {
+            mergeJoin(bank::next, clearing::next, (ours, theirs) -> {
+                if (ours != null) {
+                    run.setBankRows(run.getBankRows() + 1);
+                }
+                if (theirs != null) {
+                    run.setClearingRows(run.getClearingRows() + 1);
+                }
+                if (theirs == null) {
+                    run.setMissingInClearing(run.getMissingInClearing() + 1);
+                    breaks.add(direction, BreakType.MISSING_IN_CLEARING, ours, null);
+                } else if (ours == null) {
+                    run.setMissingInBank(run.getMissingInBank() + 1);
+                    breaks.add(direction, BreakType.MISSING_IN_BANK, null, theirs);
+                } else {
+                    boolean statusDiffers = !ours.status().equals(theirs.status());
+                    boolean amountDiffers = ours.amount().compareTo(theirs.amount()) != 0;
+                    if (statusDiffers) {
+                        run.setStatusMismatches(run.getStatusMismatches() + 1);
+                        breaks.add(direction, BreakType.STATUS_MISMATCH, ours, theirs);
+                    }
+                    if (amountDiffers) {
+                        run.setAmountMismatches(run.getAmountMismatches() + 1);
+                        breaks.add(direction, BreakType.AMOUNT_MISMATCH, ours, theirs);
+                    }
+                    if (!statusDiffers && !amountDiffers) {
+                        run.setMatched(run.getMatched() + 1);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Walks two id-ordered row streams together and passes every id once,
+     * with the row of each side that has it (null for the side without).
+     */
+    static void mergeJoin(RowSource bank, RowSource clearing, Joined joined) throws IOException, SQLException {
+        Row ours = next(bank, null, "Bank");
+        Row theirs = next(clearing, null, "Clearing");
+        while (ours != null || theirs != null) {
+            int order = ours == null ? 1 : theirs == null ? -1 : ID_ORDER.compare(ours.id(), theirs.id());
+            joined.accept(order <= 0 ? ours : null, order >= 0 ? theirs : null);
+            if (order <= 0) {
+                ours = next(bank, ours, "Bank");
+            }
+            if (order >= 0) {
+                theirs = next(clearing, theirs, "Clearing");
+            }
+        }
+    }
+
+    // ====== Helpers ======
+
+    // The smallest v7 id created at the given time
+    private UUID lowestId(LocalDateTime time) {
+        return new UUID(time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() << 16, 0);
+    }
+
+    private ReconciliationReport toReport(ReconciliationRun run) {
+        return new ReconciliationReport(run.getId(), run.getStatus(), run.getFromTime(), run.getToTime(),
+                run.getBankRows(), run.getClearingRows(), run.getMatched(), run.getMissingInBank(),
+                run.getMissingInClearing(), run.getStatusMismatches(), run.getAmountMismatches(),
+                run.getStartedAt(), run.getFinishedAt());
+    }
+
+    // A merge-join on rows out of order would report every later row as a break
+    private static Row next(RowSource source, Row previous, String side) throws IOException, SQLException {
+        Row next = source.next();
+        if (previous != null && next != null && ID_ORDER.compare(previous.id(), next.id()) >= 0) {
+            throw new IllegalStateException(side + " rows are not in transaction id order at " + next.id());
+        }
+        return next;
+    }
+
+    private enum Direction {
+        OUTGOING("outgoing_transactions"),
+        INCOMING("incoming_transactions");
+
+        private final String table;
+
+        Direction(String table) {
+            this.table = table;
+        }
+    }
+
+    record Row(UUID id, BigDecimal amount, String status) {
+    }
+
+    interface RowSource {
+        // Null once the rows are exhausted
+        Row next() throws IOException, SQLException;
+    }
+
+    interface Joined {
+        void accept(Row bank, Row clearing);
+    }
+
+    /**
+     * The bank's rows of every shard, in id order: one cursor per shard on a
+     * connection of its own, merged by a priority queue.
+     */
+    private final class BankRows implements AutoCloseable {
+
+        private final List<Connection> connections = new ArrayList<>();
+        private final PriorityQueue<Cursor> cursors = new PriorityQueue<>(
+                Comparator.comparing((Cursor cursor) -> cursor.row.id(), ID_ORDER));
+
+        BankRows(Direction direction, UUID from, UUID to) throws SQLException {
+            String query = "SELECT transaction_id, amount, status FROM " + direction.table
+                    + " WHERE transaction_id >= ? AND transaction_id < ? ORDER BY transaction_id";
+            try {
+                for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                    Connection connection = shardRouter.dataSource(shard).getConnection();
+                    connections.add(connection);
+                    // The driver only streams with a fetch size inside a transaction
+                    connection.setAutoCommit(false);
+                    PreparedStatement statement = connection.prepareStatement(query);
+                    statement.setFetchSize(fetchSize);
+                    statement.setObject(1, from);
+                    statement.setObject(2, to);
+                    Cursor cursor = new Cursor(statement.executeQuery());
+                    if (cursor.advance()) {
+                        cursors.add(cursor);
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        Row next() throws SQLException {
+            Cursor cursor = cursors.poll();
+            if (cursor == null) {
+                return null;
+            }
+            Row row = cursor.row;
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+            return row;
+        }
+
+        @Override
+        public void close() {
+            for (Connection connection : connections) {
+                try {
+                    connection.rollback();
+                    connection.close();
+                } catch (SQLException e) {
+                    log.warn("Failed to close reconciliation cursor: {}", e.getMessage());
+                }
+            }
+        }
+
+        private static final class Cursor {
+
+            private final ResultSet rs;
+            private Row row;
+
+            Cursor(ResultSet rs) {
+                this.rs = rs;
+            }
+
+            boolean advance() throws SQLException {
+                if (!rs.next()) {
+                    return false;
+                }
+                row = new Row(rs.getObject(1, UUID.class), rs.getBigDecimal(2), rs.getString(3));
+                return true;
+            }
+        }
+    }
+
+    // Clearing's rows for this bank, parsed from its CSV export as they arrive
+    private final class ClearingRows implements AutoCloseable {
+
+        private final BufferedReader reader;
+
+        ClearingRows(Direction direction, UUID from, UUID to) throws IOException, InterruptedException {
+            URI uri = URI.create(clearingUrl + "/clearing/transaction/export?clearingNumber="
+                    + URLEncoder.encode(bankConfig.getClearingNumber(), StandardCharsets.UTF_8)
+                    + "&direction=" + direction + "&from=" + from + "&to=" + to);
+            HttpResponse<InputStream> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                try (InputStream body = response.body()) {
+                    throw new IllegalStateException("Clearing export returned HTTP " + response.statusCode() + ": "
+                            + new String(body.readNBytes(500), StandardCharsets.UTF_8));
+                }
+            }
+            this.reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        Row next() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            String[] fields = line.split(",", 3);
+            return new Row(UUID.fromString(fields[0]), new BigDecimal(fields[1]), fields[2]);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Stores breaks on shard 0 in batches, up to max-breaks per run
+    private final class BreakWriter {
+
+        private final Long runId;
+        private final List<Object[]> batch = new ArrayList<>(BREAK_BATCH_SIZE);
+        private long written;
+
+        BreakWriter(Long runId) {
+            this.runId = runId;
+        }
+
+        void add(Direction direction, BreakType type, Row bank, Row clearing) {
+            if (written + batch.size() >= maxBreaks) {
+                return;
+            }
+            UUID id = bank != null ? bank.id() : clearing.id();
+            batch.add(new Object[] { runId, id, direction.name(), type.name(),
+                    bank != null ? bank.status() : null, bank != null ? bank.amount() : null,
+                    clearing != null ? clearing.status() : null, clearing != null ? clearing.amount() : null });
+            if (batch.size() == BREAK_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            shardRouter.onShard(0, () -> jdbcTemplate.batchUpdate(INSERT_BREAK, batch));
+            written += batch.size();
+            batch.clear();
+        }
+    }
+}
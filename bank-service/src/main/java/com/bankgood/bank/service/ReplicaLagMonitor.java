@@ -0,0 +1,67 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.config.ReplicaRoutingDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how far every read replica is behind its primary, so that
+ * ReplicaRoutingDataSource only sends reads to replicas within max-lag-ms.
+ * A replica that cannot be reached is taken out until it answers again.
+ */
+@Slf4j
+@Component
+public class ReplicaLagMonitor {
+
+    // Caught up when everything received has been replayed, else the age of the last replayed commit
+    private static final String LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery() "
+            + "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE coalesce(extract(epoch FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END::bigint";
+
+    private final List<ReplicaRoutingDataSource> routings = new ArrayList<>();
+
+    public ReplicaLagMonitor(ShardRouter shardRouter) throws SQLException {
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            DataSource dataSource = shardRouter.dataSource(shard);
+            if (dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+                routings.add(dataSource.unwrap(ReplicaRoutingDataSource.class));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bank.replicas.lag-check-ms:1000}")
+    public void check() {
+        for (ReplicaRoutingDataSource routing : routings) {
+            for (int replica = 0; replica < routing.getReplicas().size(); replica++) {
+                boolean wasUsable = routing.isUsable(replica);
+                routing.setLag(replica, measure(routing.getReplicas().get(replica)));
+                if (wasUsable != routing.isUsable(replica)) {
+                    log.info("Read replica {} is {}", replica, routing.isUsable(replica)
+                            ? "back within the lag limit" : "lagging or unreachable, reading from the primary");
+                }
+            }
+        }
+    }
+
+    private long measure(DataSource replica) {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(LAG_SQL)) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            log.debug("Could not measure replica lag: {}", e.getMessage());
+            return Long.MAX_VALUE;
+        }
+    }
+}
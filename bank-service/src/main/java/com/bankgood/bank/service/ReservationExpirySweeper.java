@@ -0,0 +1,132 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.model.TransactionStatus;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Fails outgoing transactions that have been PENDING for longer than
+ * timeout-ms and releases their reserved funds.
+ *
+ * Candidates are found through a partial index on PENDING rows by created_at,
+ * so a sweep reads only the oldest pending rows and never the settled history.
+ * Each batch marks the rows FAILED and subtracts their amounts from
+ * accounts.reserved_balance (one UPDATE per account) in a single statement.
+ *
+ * The timeout must stay longer than the clearing-side deadline: a transaction
+ * failed here is ignored if clearing reports SUCCESS for it afterwards.
+ */
+@Slf4j
+@Component
+public class ReservationExpirySweeper {
+
+    private static final String CREATE_PENDING_INDEX = "CREATE INDEX IF NOT EXISTS idx_outgoing_reservation_expiry "
+            + "ON outgoing_transactions (created_at) WHERE status = 'PENDING'";
+
+    // Earlier name of the same index
+    private static final String DROP_OLD_INDEX = "DROP INDEX IF EXISTS idx_outgoing_pending_created";
+
+    // created_at and status must match the partial index predicate for it to be used;
+    // joining on created_at as well lets the UPDATE skip partitions
+    private static final String EXPIRE_BATCH = "WITH expired AS ("
+            + "  SELECT transaction_id, created_at FROM outgoing_transactions "
+            + "  WHERE status = 'PENDING' AND created_at < ? ORDER BY created_at LIMIT ? FOR UPDATE SKIP LOCKED), "
+            + "failed AS ("
+            + "  UPDATE outgoing_transactions t SET status = 'FAILED', updated_at = now() "
+            + "  FROM expired e WHERE t.transaction_id = e.transaction_id AND t.created_at = e.created_at "
+            + "  RETURNING t.transaction_id, t.from_account_number, t.amount), "
+            + "released AS ("
+            + "  UPDATE accounts a SET reserved_balance = greatest(a.reserved_balance - r.amount, 0), "
+            + "  version = coalesce(a.version, 0) + 1, updated_at = now() "
+            + "  FROM (SELECT from_account_number, sum(amount) AS amount FROM failed GROUP BY from_account_number) r "
+            + "  WHERE a.account_number = r.from_account_number RETURNING a.account_number) "
+            + "SELECT f.transaction_id, f.from_account_number FROM failed f";
+
+    @Value("${bank.reservation-expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bank.reservation-expiry.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${bank.reservation-expiry.batch-size:500}")
+    private int batchSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionStatusNotifier statusNotifier;
+    private final AccountReadModel readModel;
+    private final ShardRouter shardRouter;
+
+    public ReservationExpirySweeper(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                    TransactionStatusNotifier statusNotifier, AccountReadModel readModel,
+                                    ShardRouter shardRouter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.statusNotifier = statusNotifier;
+        this.readModel = readModel;
+        this.shardRouter = shardRouter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndex() {
+        // The oldest-first scan of PENDING reservations; an entity @Index cannot carry the WHERE clause
+        shardRouter.forEachShard(() -> {
+            jdbcTemplate.execute(CREATE_PENDING_INDEX);
+            jdbcTemplate.execute(DROP_OLD_INDEX);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${bank.reservation-expiry.sweep-ms:60000}",
+            initialDelayString = "${bank.reservation-expiry.sweep-ms:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusNanos(timeoutMs * 1_000_000));
+        int total = shardRouter.gather(() -> {
+            int swept = 0;
+            int expired;
+            do {
+                expired = expireBatch(cutoff);
+                swept += expired;
+            } while (expired == batchSize);
+            return swept;
+        }).stream().mapToInt(Integer::intValue).sum();
+
+        if (total > 0) {
+            log.warn("Expired {} outgoing transactions pending since before {} and released their reservations",
+                    total, cutoff);
+        }
+    }
+
+    private int expireBatch(Timestamp cutoff) {
+        Set<String> accounts = new HashSet<>();
+        List<UUID> expired = transactionTemplate.execute(status -> {
+            List<UUID> ids = new ArrayList<>();
+            jdbcTemplate.query(EXPIRE_BATCH, rs -> {
+                ids.add(rs.getObject(1, UUID.class));
+                accounts.add(rs.getString(2));
+            }, cutoff, batchSize);
+            statusNotifier.publishAll(ids, TransactionStatus.FAILED);
+            return ids;
+        });
+        accounts.forEach(readModel::evict);
+        return expired.size();
+    }
+}
@@ -0,0 +1,382 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.config.ShardContext;
+import com.bankgood.bank.event.OutgoingTransactionEvent;
+import com.bankgood.bank.event.ScheduledPaymentDTO;
+import com.bankgood.bank.model.Recurrence;
+import com.bankgood.bank.model.ScheduledPayment;
+import com.bankgood.bank.model.ScheduledPaymentStatus;
+import com.bankgood.bank.repository.ScheduledPaymentRepository;
+import com.bankgood.bank.repository.ScheduledPaymentRepository.DueEntry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Scheduled payments and standing orders.
+ *
+ * Only payments due within the next horizon-ms are held in memory, in a
+ * HierarchicalTimingWheel keyed by id. The loader walks the
+ * (status, nextExecutionAt, id) index with a keyset cursor, so every row is
+ * read once per execution instead of being rescanned on every tick. Due ids
+ * are executed in batches: each batch locks its rows with SKIP LOCKED,
+ * creates the payments through TransactionService.createOutgoingTransaction
+ * (reserve funds and outbox) and advances the schedule in one transaction.
+ * A row that is not due any more, or is locked by another pod, is skipped, so
+ * any number of pods can fire the same wheel safely. Each shard is loaded
+ * with its own cursor, and wheel entries remember the shard they came from.
+ * Overdue rows picked up by the loader are skipped while they are already
+ * queued or executing here, so a backlog is not queued again on every load.
+ */
+@Slf4j
+@Service
+public class ScheduledPaymentService {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final int LOAD_PAGE_SIZE = 10_000;
+
+    @Value("${bank.scheduled-payments.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bank.scheduled-payments.horizon-ms:600000}")
+    private long horizonMs;
+
+    @Value("${bank.scheduled-payments.max-loaded:1000000}")
+    private int maxLoaded;
+
+    @Value("${bank.scheduled-payments.batch-size:200}")
+    private int batchSize;
+
+    @Value("${bank.scheduled-payments.catch-up-grace-ms:60000}")
+    private long catchUpGraceMs;
+
+    private final ScheduledPaymentRepository repository;
+    private final TransactionService transactionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    private final HierarchicalTimingWheel<Due> wheel;
+    private final ExecutorService workers;
+
+    // Overdue entries waiting in the wheel, and fired entries until their batch has run
+    private final Set<Due> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Per shard: everything up to and including this (time, id) position is in the wheel
+    private final LocalDateTime[] loadedTime;
+    private final UUID[] loadedId;
+
+    public ScheduledPaymentService(ScheduledPaymentRepository repository, TransactionService transactionService,
+                                   PlatformTransactionManager transactionManager, ShardRouter shardRouter,
+                                   @Value("${bank.scheduled-payments.tick-ms:1000}") long tickMs,
+                                   @Value("${bank.scheduled-payments.parallelism:4}") int parallelism) {
+        this.repository = repository;
+        this.transactionService = transactionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.wheel = new HierarchicalTimingWheel<>(tickMs, 4, System.currentTimeMillis());
+        this.loadedTime = new LocalDateTime[shardRouter.shardCount()];
+        this.loadedId = new UUID[shardRouter.shardCount()];
+        Arrays.fill(loadedTime, LocalDateTime.of(1970, 1, 1, 0, 0));
+        Arrays.fill(loadedId, new UUID(0, 0));
+
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "scheduled-payment-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // =================== API ===================
+
+    @Transactional
+    public ScheduledPaymentDTO create(ScheduledPaymentDTO dto) {
+        if (dto.getFromAccountNumber() == null || dto.getFromAccountNumber().isBlank()
+                || dto.getToBankgoodNumber() == null || dto.getToBankgoodNumber().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fromAccountNumber and toBankgoodNumber are required");
+        }
+        if (dto.getAmount() == null || dto.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Amount must be above 0");
+        }
+        if (dto.getNextExecutionAt() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "nextExecutionAt is required");
+        }
+
+        ScheduledPayment payment = new ScheduledPayment();
+        payment.setFromAccountNumber(dto.getFromAccountNumber());
+        payment.setToBankgoodNumber(dto.getToBankgoodNumber());
+        payment.setAmount(dto.getAmount());
+        payment.setRecurrence(dto.getRecurrence() != null ? dto.getRecurrence() : Recurrence.NONE);
+        payment.setAnchorDay(dto.getNextExecutionAt().getDayOfMonth());
+        payment.setNextExecutionAt(dto.getNextExecutionAt());
+        payment.setEndDate(dto.getEndDate());
+        ScheduledPayment saved = repository.save(payment);
+
+        int shard = ShardContext.shard();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                scheduleIfLoaded(shard, saved.getId(), saved.getNextExecutionAt());
+            }
+        });
+        return toDTO(saved);
+    }
+
+    public boolean exists(UUID id) {
+        return repository.existsById(id);
+    }
+
+    @Transactional(readOnly = true)
+    public ScheduledPaymentDTO get(UUID id) {
+        return repository.findById(id)
+                .map(this::toDTO)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Scheduled payment not found"));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ScheduledPaymentDTO> getByAccount(String accountNumber) {
+        return repository.findByFromAccountNumberOrderByNextExecutionAt(accountNumber).stream()
+                .map(this::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    // The wheel entry stays; it is skipped at execution because the row is no longer ACTIVE
+    @Transactional
+    public ScheduledPaymentDTO cancel(UUID id) {
+        repository.cancelIfActive(id);
+        return get(id);
+    }
+
+    // =================== LOADER ===================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        loadHorizon();
+    }
+
+    @Scheduled(fixedDelayString = "${bank.scheduled-payments.load-interval-ms:60000}",
+            initialDelayString = "${bank.scheduled-payments.load-interval-ms:60000}")
+    public void loadHorizon() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime until = LocalDateTime.now().plusNanos(horizonMs * 1_000_000);
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int current = shard;
+            shardRouter.onShard(shard, () -> loadShard(current, until));
+        }
+    }
+
+    private void loadShard(int shard, LocalDateTime until) {
+        int loaded = 0;
+
+        synchronized (this) {
+            while (true) {
+                int room = Math.min(LOAD_PAGE_SIZE, maxLoaded - wheel.size());
+                if (room <= 0) {
+                    break;
+                }
+                List<DueEntry> page = repository.findUpcoming(until, loadedTime[shard], loadedId[shard],
+                        PageRequest.ofSize(room));
+                for (DueEntry entry : page) {
+                    wheel.add(new Due(entry.getId(), shard), toMillis(entry.getNextExecutionAt()));
+                    loadedTime[shard] = entry.getNextExecutionAt();
+                    loadedId[shard] = entry.getId();
+                }
+                loaded += page.size();
+                if (page.size() < room) {
+                    // The whole window is loaded; new rows inside it are added directly by scheduleIfLoaded
+                    loadedTime[shard] = until;
+                    loadedId[shard] = new UUID(0, 0);
+                    break;
+                }
+            }
+        }
+
+        // Rows another pod rescheduled into our window, or left behind when it stopped or moved between shards
+        int overdue = 0;
+        int room = Math.min(LOAD_PAGE_SIZE, maxLoaded - wheel.size() - inFlight.size());
+        if (room > 0) {
+            for (DueEntry entry : repository.findOverdue(
+                    LocalDateTime.now().minusNanos(catchUpGraceMs * 1_000_000), PageRequest.ofSize(room))) {
+                Due due = new Due(entry.getId(), shard);
+                if (inFlight.add(due)) {
+                    wheel.add(due, 0);
+                    overdue++;
+                }
+            }
+        }
+
+        if (loaded > 0 || overdue > 0) {
+            log.info("Loaded {} scheduled payments up to {} ({} overdue, {} in wheel)",
+                    loaded, loadedTime[shard], overdue, wheel.size());
+        }
+    }
+
+    // =================== EXECUTION ===================
+
+    @Scheduled(fixedDelayString = "${bank.scheduled-payments.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        List<Due> due = wheel.advance(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return;
+        }
+        inFlight.addAll(due);
+
+        // Hand off and return: the shared scheduler thread also drives the outbox publisher
+        int batches = 0;
+        Map<Integer, List<UUID>> dueByShard = due.stream().collect(Collectors.groupingBy(
+                Due::shard, TreeMap::new, Collectors.mapping(Due::id, Collectors.toList())));
+        for (Map.Entry<Integer, List<UUID>> shardDue : dueByShard.entrySet()) {
+            List<UUID> ids = shardDue.getValue();
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<UUID> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                int shard = shardDue.getKey();
+                workers.execute(() -> {
+                    try {
+                        shardRouter.onShard(shard, () -> executeBatch(batch));
+                    } finally {
+                        batch.forEach(id -> inFlight.remove(new Due(id, shard)));
+                    }
+                });
+                batches++;
+            }
+        }
+        log.info("Fired {} scheduled payments in {} batches", due.size(), batches);
+    }
+
+    private void executeBatch(List<UUID> ids) {
+        List<ScheduledPayment> executed;
+        try {
+            executed = transactionTemplate.execute(status -> execute(ids));
+        } catch (RuntimeException e) {
+            if (ids.size() == 1) {
+                log.error("Scheduled payment {} failed: {}", ids.get(0), e.getMessage());
+                return;
+            }
+            // One bad row must not hold back the rest of the batch
+            log.warn("Batch of {} scheduled payments failed, retrying individually: {}", ids.size(), e.getMessage());
+            ids.forEach(id -> executeBatch(List.of(id)));
+            return;
+        }
+        executed.stream()
+                .filter(payment -> payment.getStatus() == ScheduledPaymentStatus.ACTIVE)
+                .forEach(payment -> scheduleIfLoaded(ShardContext.shard(), payment.getId(),
+                        payment.getNextExecutionAt()));
+    }
+
+    private List<ScheduledPayment> execute(List<UUID> ids) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ScheduledPayment> claimed = repository.lockDue(ids, now);
+
+        for (ScheduledPayment payment : claimed) {
+            OutgoingTransactionEvent event = new OutgoingTransactionEvent();
+            event.setFromAccountNumber(payment.getFromAccountNumber());
+            event.setToBankgoodNumber(payment.getToBankgoodNumber());
+            event.setAmount(payment.getAmount());
+            // Same shard as the payment; sets the debit account's bucket for the new transaction id
+            shardRouter.forAccount(payment.getFromAccountNumber(),
+                    () -> transactionService.createOutgoingTransaction(event));
+
+            payment.setLastTransactionId(event.getTransactionId());
+            payment.setLastTransactionStatus(event.getStatus());
+            payment.setExecutions(payment.getExecutions() + 1);
+            advance(payment, now);
+        }
+        return repository.saveAll(claimed);
+    }
+
+    // ====== Helpers ======
+
+    private void advance(ScheduledPayment payment, LocalDateTime now) {
+        LocalDateTime next = payment.getNextExecutionAt();
+        // Skip occurrences missed while the service was down instead of paying them all at once
+        do {
+            next = nextOccurrence(payment, next);
+        } while (next != null && !next.isAfter(now));
+
+        if (next == null || (payment.getEndDate() != null && next.toLocalDate().isAfter(payment.getEndDate()))) {
+            payment.setStatus(ScheduledPaymentStatus.COMPLETED);
+        } else {
+            payment.setNextExecutionAt(next);
+        }
+    }
+
+    private LocalDateTime nextOccurrence(ScheduledPayment payment, LocalDateTime current) {
+        return switch (payment.getRecurrence()) {
+            case NONE -> null;
+            case DAILY -> current.plusDays(1);
+            case WEEKLY -> current.plusWeeks(1);
+            case MONTHLY -> {
+                LocalDateTime next = current.plusMonths(1);
+                yield next.withDayOfMonth(Math.min(payment.getAnchorDay(), next.toLocalDate().lengthOfMonth()));
+            }
+        };
+    }
+
+    private synchronized void scheduleIfLoaded(int shard, UUID id, LocalDateTime nextExecutionAt) {
+        // Later positions are picked up by the loader when the horizon reaches them
+        int position = nextExecutionAt.compareTo(loadedTime[shard]);
+        if (position < 0 || (position == 0 && compareUuids(id, loadedId[shard]) <= 0)) {
+            wheel.add(new Due(id, shard), toMillis(nextExecutionAt));
+        }
+    }
+
+    // Same order as Postgres uses for uuid columns
+    private static int compareUuids(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private record Due(UUID id, int shard) {
+    }
+
+    private ScheduledPaymentDTO toDTO(ScheduledPayment payment) {
+        return new ScheduledPaymentDTO(
+                payment.getId(),
+                payment.getFromAccountNumber(),
+                payment.getToBankgoodNumber(),
+                payment.getAmount(),
+                payment.getRecurrence(),
+                payment.getNextExecutionAt(),
+                payment.getEndDate(),
+                payment.getStatus(),
+                payment.getExecutions(),
+                payment.getLastTransactionId(),
+                payment.getLastTransactionStatus());
+    }
+}
@@ -0,0 +1,265 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.config.ShardContext;
+import com.bankgood.bank.event.BucketMove;
+import com.bankgood.bank.event.ShardInfo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves account buckets between shards.
+ *
+ * A move marks the bucket as moving in the directory, which pauses routing to
+ * it, and waits move-settle-ms so every pod has seen the mark and requests
+ * already routed have finished. The bucket's accounts are then locked on the
+ * source, their rows copied to the target and committed there, the directory
+ * is flipped, and finally the rows are deleted from the source.
+ *
+ * Outbox rows stay on the source shard, which still publishes them. Moves
+ * should not run during an end-of-day run.
+ */
+@Slf4j
+@Service
+public class ShardRebalancer {
+
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    // Everything that belongs to an account, keyed by account number or account id
+    private static final List<MovedTable> TABLES = List.of(
+            new MovedTable("accounts", "account_number", false, null, null),
+            new MovedTable("outgoing_transactions", "from_account_number", false, null, null),
+            new MovedTable("incoming_transactions", "to_account_number", false, null, null),
+            new MovedTable("scheduled_payments", "from_account_number", false, null, null),
+            new MovedTable("ledger_entries", "account_id", true, "id", "nextval('ledger_entries_seq')"),
+            new MovedTable("ledger_checkpoints", "account_id", true, "id", "DEFAULT"));
+
+    private static final String LOCK_ACCOUNTS = "SELECT account_id, account_number FROM accounts WHERE "
+            + ShardRouter.BUCKET_SQL.formatted("account_number") + " = ? FOR UPDATE";
+
+    // Should cover at least two directory refreshes
+    @Value("${bank.sharding.move-settle-ms:10000}")
+    private long moveSettleMs;
+
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final AccountReadModel readModel;
+
+    public ShardRebalancer(ShardRouter shardRouter, JdbcTemplate jdbcTemplate, AccountReadModel readModel) {
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readModel = readModel;
+    }
+
+    public List<ShardInfo> getShards() {
+        List<Long> accounts = shardRouter.gather(
+                () -> jdbcTemplate.queryForObject("SELECT count(*) FROM accounts", Long.class));
+        List<ShardInfo> shards = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shards.add(new ShardInfo(shard, 0, 0, accounts.get(shard)));
+        }
+        for (int bucket = 0; bucket < ShardContext.BUCKETS; bucket++) {
+            ShardInfo owner = shards.get(shardRouter.ownerOf(bucket));
+            owner.setBuckets(owner.getBuckets() + 1);
+            if (shardRouter.movingTo(bucket) >= 0) {
+                owner.setMovingBuckets(owner.getMovingBuckets() + 1);
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Moves buckets from the shard with the most buckets to the one with the
+     * fewest until they differ by at most one, or maxMoves buckets have moved.
+     */
+    public List<BucketMove> rebalance(int maxMoves) {
+        requireSharding();
+        List<BucketMove> moves = new ArrayList<>();
+        while (moves.size() < maxMoves) {
+            int[] buckets = new int[shardRouter.shardCount()];
+            for (int bucket = 0; bucket < ShardContext.BUCKETS; bucket++) {
+                buckets[shardRouter.ownerOf(bucket)]++;
+            }
+            int fullest = 0;
+            int emptiest = 0;
+            for (int shard = 1; shard < buckets.length; shard++) {
+                fullest = buckets[shard] > buckets[fullest] ? shard : fullest;
+                emptiest = buckets[shard] < buckets[emptiest] ? shard : emptiest;
+            }
+            if (buckets[fullest] - buckets[emptiest] <= 1) {
+                break;
+            }
+            moves.add(moveBucket(lastBucketOf(fullest), emptiest));
+        }
+        return moves;
+    }
+
+    public synchronized BucketMove moveBucket(int bucket, int to) {
+        requireSharding();
+        if (bucket < 0 || bucket >= ShardContext.BUCKETS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown bucket " + bucket);
+        }
+        if (to < 0 || to >= shardRouter.shardCount()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown shard " + to);
+        }
+        int from = shardRouter.ownerOf(bucket);
+        if (from == to) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bucket " + bucket + " is already on shard " + to);
+        }
+        if (!shardRouter.beginMove(bucket, from, to)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Bucket " + bucket + " is already moving");
+        }
+
+        long started = System.currentTimeMillis();
+        BucketMove move = new BucketMove(bucket, from, to, 0, 0, 0);
+        List<String> accountNumbers = new ArrayList<>();
+        boolean flipped = false;
+
+        try {
+            Thread.sleep(moveSettleMs);
+            try (Connection source = shardRouter.dataSource(from).getConnection();
+                 Connection target = shardRouter.dataSource(to).getConnection()) {
+                source.setAutoCommit(false);
+                target.setAutoCommit(false);
+
+                List<UUID> accountIds = new ArrayList<>();
+                try (PreparedStatement lock = source.prepareStatement(LOCK_ACCOUNTS)) {
+                    lock.setInt(1, bucket);
+                    try (ResultSet rs = lock.executeQuery()) {
+                        while (rs.next()) {
+                            accountIds.add(rs.getObject(1, UUID.class));
+                            accountNumbers.add(rs.getString(2));
+                        }
+                    }
+                }
+                move.setAccounts(accountIds.size());
+
+                try {
+                    for (MovedTable table : TABLES) {
+                        Object[] keys = table.byAccountId() ? accountIds.toArray() : accountNumbers.toArray();
+                        delete(target, table, keys);
+                        move.setRowsCopied(move.getRowsCopied() + copy(source, target, table, keys));
+                    }
+                    target.commit();
+
+                    shardRouter.finishMove(bucket, to);
+                    flipped = true;
+
+                    for (MovedTable table : TABLES) {
+                        delete(source, table, table.byAccountId() ? accountIds.toArray() : accountNumbers.toArray());
+                    }
+                    source.commit();
+                } catch (SQLException | RuntimeException e) {
+                    target.rollback();
+                    source.rollback();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shardRouter.abortMove(bucket);
+            throw new IllegalStateException("Interrupted while moving bucket " + bucket, e);
+        } catch (SQLException | RuntimeException e) {
+            if (!flipped) {
+                shardRouter.abortMove(bucket);
+                throw new IllegalStateException("Failed to move bucket " + bucket + " to shard " + to, e);
+            }
+            // The target owns the rows now; the copies left on the source are never routed to
+            log.error("Moved bucket {} to shard {} but could not delete its rows from shard {}", bucket, to, from, e);
+        }
+
+        accountNumbers.forEach(readModel::evict);
+        move.setElapsedMs(System.currentTimeMillis() - started);
+        log.info("Moved bucket {} from shard {} to shard {}: {} accounts, {} rows in {} ms",
+                bucket, from, to, move.getAccounts(), move.getRowsCopied(), move.getElapsedMs());
+        return move;
+    }
+
+    // ====== Helpers ======
+
+    private void requireSharding() {
+        if (!shardRouter.isSharded()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Sharding is not enabled");
+        }
+    }
+
+    private int lastBucketOf(int shard) {
+        for (int bucket = ShardContext.BUCKETS - 1; bucket >= 0; bucket--) {
+            if (shardRouter.ownerOf(bucket) == shard && shardRouter.movingTo(bucket) < 0) {
+                return bucket;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "Every bucket on shard " + shard + " is moving");
+    }
+
+    private long copy(Connection source, Connection target, MovedTable table, Object[] keys) throws SQLException {
+        long copied = 0;
+        try (PreparedStatement select = source.prepareStatement(
+                "SELECT * FROM " + table.name() + " WHERE " + table.key() + " = ANY(?)")) {
+            select.setArray(1, array(source, table, keys));
+            try (ResultSet rs = select.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                List<Integer> columns = new ArrayList<>();
+                StringBuilder names = new StringBuilder();
+                StringBuilder values = new StringBuilder();
+                if (table.idColumn() != null) {
+                    names.append(table.idColumn());
+                    values.append(table.idValue());
+                }
+                for (int column = 1; column <= meta.getColumnCount(); column++) {
+                    if (meta.getColumnName(column).equals(table.idColumn())) {
+                        continue;
+                    }
+                    columns.add(column);
+                    names.append(names.length() > 0 ? ", " : "").append(meta.getColumnName(column));
+                    values.append(values.length() > 0 ? ", " : "").append('?');
+                }
+
+                try (PreparedStatement insert = target.prepareStatement(
+                        "INSERT INTO " + table.name() + " (" + names + ") VALUES (" + values + ")")) {
+                    while (rs.next()) {
+                        for (int i = 0; i < columns.size(); i++) {
+                            insert.setObject(i + 1, rs.getObject(columns.get(i)));
+                        }
+                        insert.addBatch();
+                        if (++copied % INSERT_BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+            }
+        }
+        return copied;
+    }
+
+    private void delete(Connection connection, MovedTable table, Object[] keys) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(
+                "DELETE FROM " + table.name() + " WHERE " + table.key() + " = ANY(?)")) {
+            delete.setArray(1, array(connection, table, keys));
+            delete.executeUpdate();
+        }
+    }
+
+    private Array array(Connection connection, MovedTable table, Object[] keys) throws SQLException {
+        return connection.createArrayOf(table.byAccountId() ? "uuid" : "text", keys);
+    }
+
+    // idColumn is generated on the target by idValue instead of copied
+    private record MovedTable(String name, String key, boolean byAccountId, String idColumn, String idValue) {
+    }
+}
@@ -0,0 +1,305 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.config.ShardContext;
+import com.bankgood.bank.config.ShardRoutingDataSource;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Decides which shard (database) owns an account and runs work there.
+ *
+ * An account number hashes to one of ShardContext.BUCKETS buckets, the first
+ * 32 bits of its MD5 masked to 10 bits, which is the same in Java and in SQL
+ * (BUCKET_SQL). The bucket directory (shard_buckets on shard 0) maps every
+ * bucket to its shard and is cached here, refreshed every
+ * directory-refresh-ms. Everything that belongs to an account, its
+ * transactions, ledger, scheduled payments and outbox rows, lives on the
+ * account's shard.
+ *
+ * Entry points (controllers, Kafka listeners, jobs) choose the shard before a
+ * transaction starts; a transaction never spans shards. Work addressed by id
+ * goes to the shard named by the bucket stamped into the id
+ * (ShardContext.newId) and falls back to the other shards for ids without a
+ * stamp.
+ *
+ * With a single database there is no directory and every call runs on shard
+ * 0 directly.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class ShardRouter {
+
+    // Postgres equivalent of bucketOf(String); %s is the account number expression
+    public static final String BUCKET_SQL = "(('x' || substr(md5(%s), 1, 8))::bit(32)::int & "
+            + (ShardContext.BUCKETS - 1) + ")";
+
+    private static final String CREATE_DIRECTORY = "CREATE TABLE IF NOT EXISTS shard_buckets ("
+            + "bucket int PRIMARY KEY, shard int NOT NULL, moving_to int, updated_at timestamp NOT NULL DEFAULT now())";
+
+    // A database that already has accounts keeps them all until buckets are moved off it
+    private static final String SEED_DIRECTORY = "INSERT INTO shard_buckets (bucket, shard) "
+            + "SELECT b, CASE WHEN EXISTS (SELECT 1 FROM accounts) THEN 0 ELSE b % ? END "
+            + "FROM generate_series(0, " + (ShardContext.BUCKETS - 1) + ") b ON CONFLICT (bucket) DO NOTHING";
+
+    private static final long MOVE_POLL_MS = 50;
+
+    @Value("${bank.sharding.move-wait-ms:30000}")
+    private long moveWaitMs;
+
+    private final List<DataSource> shards;
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Directory directory;
+
+    public ShardRouter(DataSource dataSource, JdbcTemplate jdbcTemplate) {
+        this.shards = dataSource instanceof ShardRoutingDataSource routing
+                ? routing.getShards()
+                : List.of(dataSource);
+        this.jdbcTemplate = jdbcTemplate;
+        this.directory = Directory.allOn(0);
+    }
+
+    // Runs after ddl-auto (entityManagerFactory) created accounts on shard 0
+    @PostConstruct
+    public void initialize() {
+        if (!isSharded()) {
+            return;
+        }
+        onShard(0, () -> {
+            jdbcTemplate.execute(CREATE_DIRECTORY);
+            jdbcTemplate.update(SEED_DIRECTORY, shards.size());
+        });
+        refreshDirectory();
+        log.info("Loaded shard directory: {} buckets over {} shards", ShardContext.BUCKETS, shards.size());
+    }
+
+    @Scheduled(fixedDelayString = "${bank.sharding.directory-refresh-ms:5000}")
+    public void refreshDirectory() {
+        if (!isSharded()) {
+            return;
+        }
+        int[] owners = new int[ShardContext.BUCKETS];
+        int[] movingTo = new int[ShardContext.BUCKETS];
+        onShard(0, () -> jdbcTemplate.query("SELECT bucket, shard, coalesce(moving_to, -1) FROM shard_buckets",
+                rs -> {
+                    int bucket = rs.getInt(1);
+                    owners[bucket] = rs.getInt(2);
+                    movingTo[bucket] = rs.getInt(3);
+                }));
+        for (int owner : owners) {
+            if (owner < 0 || owner >= shards.size()) {
+                throw new IllegalStateException("Shard directory refers to shard " + owner + " but only "
+                        + shards.size() + " are configured");
+            }
+        }
+        directory = new Directory(owners, movingTo);
+    }
+
+    // ===================== LOOKUP =====================
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    public DataSource dataSource(int shard) {
+        return shards.get(shard);
+    }
+
+    public static int bucketOf(String accountNumber) {
+        if (accountNumber == null) {
+            return 0;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(accountNumber.getBytes(StandardCharsets.UTF_8));
+            int high = ((digest[0] & 0xFF) << 24) | ((digest[1] & 0xFF) << 16) | ((digest[2] & 0xFF) << 8)
+                    | (digest[3] & 0xFF);
+            return high & (ShardContext.BUCKETS - 1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    /**
+     * The shard owning the account. Waits while the account's bucket is being
+     * moved, up to move-wait-ms.
+     */
+    public int shardOf(String accountNumber) {
+        return resolve(bucketOf(accountNumber));
+    }
+
+    public int ownerOf(int bucket) {
+        return directory.owners()[bucket];
+    }
+
+    public int movingTo(int bucket) {
+        return directory.movingTo()[bucket];
+    }
+
+    // ===================== ROUTING =====================
+
+    /**
+     * Runs the action on the account's shard, with the account's bucket
+     * available for id stamping.
+     */
+    public <T> T forAccount(String accountNumber, Supplier<T> action) {
+        int bucket = bucketOf(accountNumber);
+        return enter(resolve(bucket), bucket, action);
+    }
+
+    public void forAccount(String accountNumber, Runnable action) {
+        forAccount(accountNumber, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the action on the shard holding the row with this id, as reported
+     * by exists. The shard named by the id's bucket stamp is asked first.
+     * If no shard has the row, the action runs on that first shard.
+     */
+    public <T> T forId(UUID id, BooleanSupplier exists, Supplier<T> action) {
+        if (!isSharded()) {
+            return action.get();
+        }
+        int bucket = ShardContext.bucketOf(id);
+        int preferred = resolve(bucket);
+        int shard = preferred;
+        if (!onShard(preferred, exists::getAsBoolean)) {
+            for (int candidate = 0; candidate < shards.size(); candidate++) {
+                if (candidate != preferred && onShard(candidate, exists::getAsBoolean)) {
+                    shard = candidate;
+                    break;
+                }
+            }
+        }
+        return enter(shard, bucket, action);
+    }
+
+    public void forId(UUID id, BooleanSupplier exists, Runnable action) {
+        forId(id, exists, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        return enter(shard, -1, action);
+    }
+
+    public void onShard(int shard, Runnable action) {
+        onShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void forEachShard(Runnable action) {
+        for (int shard = 0; shard < shards.size(); shard++) {
+            onShard(shard, action);
+        }
+    }
+
+    // One result per shard, in shard order
+    public <T> List<T> gather(Supplier<T> action) {
+        List<T> results = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            results.add(onShard(shard, action));
+        }
+        return results;
+    }
+
+    // ===================== DIRECTORY CHANGES =====================
+
+    /**
+     * Marks the bucket as moving so that routing to it pauses. Returns false
+     * if the bucket is not on the given shard or is already moving.
+     */
+    boolean beginMove(int bucket, int from, int to) {
+        int updated = onShard(0, () -> jdbcTemplate.update("UPDATE shard_buckets SET moving_to = ?, updated_at = now() "
+                + "WHERE bucket = ? AND shard = ? AND moving_to IS NULL", to, bucket, from));
+        refreshDirectory();
+        return updated == 1;
+    }
+
+    void finishMove(int bucket, int to) {
+        onShard(0, () -> jdbcTemplate.update("UPDATE shard_buckets SET shard = ?, moving_to = NULL, updated_at = now() "
+                + "WHERE bucket = ?", to, bucket));
+        refreshDirectory();
+    }
+
+    void abortMove(int bucket) {
+        onShard(0, () -> jdbcTemplate.update("UPDATE shard_buckets SET moving_to = NULL, updated_at = now() "
+                + "WHERE bucket = ?", bucket));
+        refreshDirectory();
+    }
+
+    // ====== Helpers ======
+
+    private int resolve(int bucket) {
+        if (!isSharded()) {
+            return 0;
+        }
+        long deadline = System.currentTimeMillis() + moveWaitMs;
+        Directory current = directory;
+        while (current.movingTo()[bucket] >= 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Account is being moved to another shard, retry later");
+            }
+            try {
+                Thread.sleep(MOVE_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a shard move", e);
+            }
+            current = directory;
+        }
+        return current.owners()[bucket];
+    }
+
+    private <T> T enter(int shard, int bucket, Supplier<T> action) {
+        // The open transaction already holds a connection to the current shard
+        if (shard != ShardContext.shard() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch to shard " + shard + " inside a transaction on shard "
+                    + ShardContext.shard());
+        }
+        return ShardContext.call(shard, bucket, action);
+    }
+
+    private record Directory(int[] owners, int[] movingTo) {
+
+        static Directory allOn(int shard) {
+            int[] owners = new int[ShardContext.BUCKETS];
+            int[] movingTo = new int[ShardContext.BUCKETS];
+            Arrays.fill(owners, shard);
+            Arrays.fill(movingTo, -1);
+            return new Directory(owners, movingTo);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.event.ArchiveRunResult;
+import com.bankgood.bank.event.TransactionHistoryEntry;
+import com.bankgood.bank.model.TransactionStatus;
+import com.bankgood.bank.model.UuidV7;
+import com.bankgood.bank.service.ArchiveSegment.Column;
+import com.bankgood.bank.service.ArchiveSegment.Header;
+import com.bankgood.bank.service.ArchiveSegment.Type;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Moves settled transactions out of Postgres into compressed columnar segment
+ * files on local disk, and answers history queries against them.
+ *
+ * A run takes SUCCESS/FAILED rows older than min-age-days, oldest first, in
+ * segments of segment-rows. Each segment is one database transaction: the
+ * rows are locked, written to a segment file, and deleted. The file is only
+ * added to the catalog once the delete commits and is removed again if it
+ * does not, so a row is never lost; a crash between the file move and the
+ * commit leaves a row in both places, which queries collapse by id.
+ *
+ * Queries never touch the database. The catalog holds every segment's header
+ * in memory, so segments whose created_at, account or id range cannot match
+ * are skipped without being opened, and within a segment only the columns the
+ * answer needs are decompressed.
+ */
+@Slf4j
+@Service
+public class TransactionArchiveService {
+
+    private static final Table OUTGOING = new Table("outgoing_transactions", "OUTGOING", "from_account_number",
+            List.of(new Column("transaction_id", Type.UUID),
+                    new Column("from_clearing_number", Type.STRING),
+                    new Column("from_account_number", Type.STRING),
+                    new Column("to_bankgood_number", Type.STRING),
+                    new Column("amount", Type.DECIMAL),
+                    new Column("status", Type.STRING),
+                    new Column("batch_id", Type.UUID),
+                    new Column("created_at", Type.TIMESTAMP),
+                    new Column("updated_at", Type.TIMESTAMP)));
+
+    private static final Table INCOMING = new Table("incoming_transactions", "INCOMING", "to_account_number",
+            List.of(new Column("transaction_id", Type.UUID),
+                    new Column("to_clearing_number", Type.STRING),
+                    new Column("to_account_number", Type.STRING),
+                    new Column("amount", Type.DECIMAL),
+                    new Column("status", Type.STRING),
+                    new Column("created_at", Type.TIMESTAMP),
+                    new Column("updated_at", Type.TIMESTAMP)));
+
+    private static final List<Table> TABLES = List.of(OUTGOING, INCOMING);
+
+    @Value("${bank.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bank.archive.min-age-days:7}")
+    private int minAgeDays;
+
+    @Value("${bank.archive.segment-rows:100000}")
+    private int segmentRows;
+
+    @Value("${bank.archive.directory:./archive}")
+    private String directory;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final List<Header> catalog = new CopyOnWriteArrayList<>();
+
+    public TransactionArchiveService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     ShardRouter shardRouter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+    }
+
+    @PostConstruct
+    public void loadCatalog() throws IOException {
+        Path root = Paths.get(directory);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(ArchiveSegment.SUFFIX)) {
+                    catalog.add(ArchiveSegment.readHeader(file));
+                } else if (name.endsWith(ArchiveSegment.SUFFIX + ".tmp")) {
+                    // Left by a run that died before moving it into place; its rows were never deleted
+                    Files.delete(file);
+                }
+            }
+        }
+        log.info("Loaded {} archive segments from {}", catalog.size(), root.toAbsolutePath());
+    }
+
+    // ===================== ARCHIVING =====================
+
+    @Scheduled(cron = "${bank.archive.cron:0 30 2 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    public ArchiveRunResult archive() {
+        long start = System.currentTimeMillis();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(minAgeDays);
+        ArchiveRunResult result = new ArchiveRunResult();
+        result.setCutoff(cutoff);
+        try {
+            Files.createDirectories(Paths.get(directory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create archive directory " + directory, e);
+        }
+
+        // Segments from all shards share the directory and catalog
+        shardRouter.forEachShard(() -> {
+            for (Table table : TABLES) {
+                long archived = 0;
+                Header segment;
+                do {
+                    segment = transactionTemplate.execute(status -> archiveSegment(table, cutoff));
+                    if (segment != null) {
+                        archived += segment.rows();
+                        result.setSegments(result.getSegments() + 1);
+                        result.setBytesWritten(result.getBytesWritten() + segment.path().toFile().length());
+                    }
+                } while (segment != null && segment.rows() == segmentRows);
+
+                if (table == OUTGOING) {
+                    result.setOutgoingArchived(result.getOutgoingArchived() + archived);
+                } else {
+                    result.setIncomingArchived(result.getIncomingArchived() + archived);
+                }
+            }
+        });
+
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        if (result.getSegments() > 0) {
+            log.info("Archived {} outgoing and {} incoming transactions created before {} into {} segments ({} bytes)",
+                    result.getOutgoingArchived(), result.getIncomingArchived(), cutoff, result.getSegments(),
+                    result.getBytesWritten());
+        }
+        return result;
+    }
+
+    private Header archiveSegment(Table table, LocalDateTime cutoff) {
+        String columns = table.columns().stream().map(Column::name).collect(Collectors.joining(", "));
+        List<Object[]> rows = jdbcTemplate.query("SELECT " + columns + " FROM " + table.name()
+                        + " WHERE status IN ('SUCCESS', 'FAILED') AND created_at < ? "
+                        + "ORDER BY created_at, transaction_id LIMIT ? FOR UPDATE SKIP LOCKED",
+                (rs, i) -> readRow(rs, table.columns()), Timestamp.valueOf(cutoff), segmentRows);
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        Header segment;
+        try {
+            // v7 ids sort by creation, so segment files list in archive order
+            segment = ArchiveSegment.write(Paths.get(directory), table.name() + "-" + UuidV7.generate(),
+                    table.name(), table.columns(), table.accountColumn(), rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write archive segment for " + table.name(), e);
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    catalog.add(segment);
+                } else {
+                    deleteQuietly(segment.path());
+                }
+            }
+        });
+
+        String[] ids = rows.stream().map(row -> row[0].toString()).toArray(String[]::new);
+        // The created_at bounds let Postgres prune partitions
+        int deleted = jdbcTemplate.update("DELETE FROM " + table.name()
+                        + " WHERE transaction_id = ANY (?::uuid[]) AND created_at BETWEEN ? AND ?",
+                ids, Timestamp.valueOf(segment.minCreatedAt()), Timestamp.valueOf(segment.maxCreatedAt()));
+        if (deleted != rows.size()) {
+            throw new IllegalStateException("Archived " + rows.size() + " rows from " + table.name()
+                    + " but deleted " + deleted);
+        }
+        return segment;
+    }
+
+    // ===================== QUERIES =====================
+
+    /**
+     * Archived history of one account, newest first. from is inclusive, to exclusive.
+     */
+    public List<TransactionHistoryEntry> getHistory(String accountNumber, LocalDateTime from, LocalDateTime to,
+                                                    int limit) {
+        List<TransactionHistoryEntry> entries = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        for (Header segment : catalog) {
+            if (!segment.overlaps(from, to) || !segment.mayContainAccount(accountNumber)) {
+                continue;
+            }
+            Table table = tableOf(segment);
+            Object[] accounts = read(segment, table.column(table.accountColumn()));
+            List<Integer> matches = new ArrayList<>();
+            for (int i = 0; i < accounts.length; i++) {
+                if (accountNumber.equals(accounts[i])) {
+                    matches.add(i);
+                }
+            }
+            if (matches.isEmpty()) {
+                continue;
+            }
+
+            Object[] createdAt = read(segment, table.column("created_at"));
+            matches.removeIf(i -> !inRange((LocalDateTime) createdAt[i], from, to));
+            if (!matches.isEmpty()) {
+                entries.addAll(toEntries(segment, table, matches, accounts, createdAt, seen));
+            }
+        }
+
+        entries.sort(Comparator.comparing(TransactionHistoryEntry::getCreatedAt)
+                .thenComparing(TransactionHistoryEntry::getTransactionId).reversed());
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    public TransactionHistoryEntry getTransaction(UUID transactionId) {
+        for (Header segment : catalog) {
+            if (!segment.mayContainId(transactionId)) {
+                continue;
+            }
+            Table table = tableOf(segment);
+            Object[] ids = read(segment, table.column("transaction_id"));
+            for (int i = 0; i < ids.length; i++) {
+                if (transactionId.equals(ids[i])) {
+                    return toEntries(segment, table, List.of(i), read(segment, table.column(table.accountColumn())),
+                            read(segment, table.column("created_at")), new HashSet<>()).get(0);
+                }
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Transaction not found in archive");
+    }
+
+    // ====== Helpers ======
+
+    private List<TransactionHistoryEntry> toEntries(Header segment, Table table, List<Integer> rows,
+                                                    Object[] accounts, Object[] createdAt, Set<UUID> seen) {
+        Object[] ids = read(segment, table.column("transaction_id"));
+        Object[] amounts = read(segment, table.column("amount"));
+        Object[] statuses = read(segment, table.column("status"));
+        Object[] toBankgood = table == OUTGOING ? read(segment, table.column("to_bankgood_number")) : null;
+
+        List<TransactionHistoryEntry> entries = new ArrayList<>(rows.size());
+        for (int i : rows) {
+            UUID id = (UUID) ids[i];
+            if (!seen.add(id)) {
+                continue;
+            }
+            entries.add(new TransactionHistoryEntry(table.direction(), id, (String) accounts[i],
+                    toBankgood != null ? (String) toBankgood[i] : null, (BigDecimal) amounts[i],
+                    TransactionStatus.valueOf((String) statuses[i]), (LocalDateTime) createdAt[i]));
+        }
+        return entries;
+    }
+
+    private Object[] readRow(ResultSet rs, List<Column> columns) throws SQLException {
+        Object[] row = new Object[columns.size()];
+        for (int c = 0; c < columns.size(); c++) {
+            row[c] = switch (columns.get(c).type()) {
+                case UUID -> rs.getObject(c + 1, UUID.class);
+                case STRING -> rs.getString(c + 1);
+                case DECIMAL -> rs.getBigDecimal(c + 1);
+                case TIMESTAMP -> rs.getObject(c + 1, LocalDateTime.class);
+            };
+        }
+        return row;
+    }
+
+    private Object[] read(Header segment, Column column) {
+        try {
+            return ArchiveSegment.readColumn(segment, column);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive segment " + segment.path(), e);
+        }
+    }
+
+    private Table tableOf(Header segment) {
+        return OUTGOING.name().equals(segment.table()) ? OUTGOING : INCOMING;
+    }
+
+    private boolean inRange(LocalDateTime createdAt, LocalDateTime from, LocalDateTime to) {
+        return (from == null || !createdAt.isBefore(from)) && (to == null || createdAt.isBefore(to));
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("Failed to remove archive segment {} after rollback; its rows are still in the database",
+                    file, e);
+        }
+    }
+
+    private record Table(String name, String direction, String accountColumn, List<Column> columns) {
+
+        Column column(String name) {
+            return columns.stream().filter(c -> c.name().equals(name)).findFirst().orElseThrow();
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.bankgood.bank.event.AccountDTO;
 import com.bankgood.bank.event.IncomingTransactionEvent;
 import com.bankgood.bank.event.OutgoingTransactionEvent;
 import com.bankgood.bank.event.ReserveFundsResult;
+import com.bankgood.bank.event.TransactionHistoryEntry;
+import com.bankgood.bank.event.TransactionHistoryPage;
 import com.bankgood.bank.event.TransactionResponseEvent;
 import com.bankgood.bank.model.IncomingTransaction;
 import com.bankgood.bank.model.OutboxEvent;
@@ -15,14 +17,27 @@ import com.bankgood.bank.repository.OutgoingTransactionRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Slf4j
@@ -35,33 +50,61 @@ public class TransactionService {
     private static final String TOPIC_INITIATED = "transactions.initiated";
     private static final String TOPIC_PROCESSED = "transactions.processed";
 
+    private static final int MAX_HISTORY_PAGE_SIZE = 500;
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final UUID MAX_UUID = new UUID(-1L, -1L);
+
+    // Single-statement transition; returns nothing if the row is missing or already settled
+    private static final String COMPLETE = "UPDATE outgoing_transactions SET status = ?, updated_at = now() "
+            + "WHERE transaction_id = ? AND status = 'PENDING' RETURNING from_account_number, amount";
+
+    // Newest first, ties broken the way Postgres orders uuid (unsigned, byte by byte)
+    private static final Comparator<TransactionHistoryEntry> HISTORY_ORDER = Comparator
+            .comparing(TransactionHistoryEntry::getCreatedAt)
+            .thenComparing(TransactionHistoryEntry::getTransactionId, TransactionService::compareUuids)
+            .reversed();
+
     private final ObjectMapper objectMapper;
     private final OutgoingTransactionRepository outgoingRepo;
     private final IncomingTransactionRepository incomingRepo;
     private final OutboxEventRepository outboxEventRepo;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
 
     private final AccountService accountService;
+    private final TransactionStatusNotifier statusNotifier;
 
     public TransactionService(
             ObjectMapper objectMapper,
             OutgoingTransactionRepository outgoingRepo,
             IncomingTransactionRepository incomingRepo,
             AccountService accountService,
-            OutboxEventRepository outboxEventRepo) {
+            OutboxEventRepository outboxEventRepo,
+            TransactionStatusNotifier statusNotifier,
+            EntityManager entityManager,
+            JdbcTemplate jdbcTemplate) {
         this.objectMapper = objectMapper;
         this.outgoingRepo = outgoingRepo;
         this.incomingRepo = incomingRepo;
         this.accountService = accountService;
         this.outboxEventRepo = outboxEventRepo;
+        this.statusNotifier = statusNotifier;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     // ======== CRUD ========
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getOutgoingTransaction(UUID id) {
         return outgoingRepo.findById(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    public boolean outgoingExists(UUID id) {
+        return outgoingRepo.existsById(id);
+    }
+
     @Transactional
     public ResponseEntity<?> deleteOutgoingTransaction(UUID id) {
         if (!outgoingRepo.existsById(id)) {
@@ -71,12 +114,17 @@ public class TransactionService {
         return ResponseEntity.ok("Outgoing transaction deleted successfully");
     }
 
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getIncomingTransaction(UUID id) {
         return incomingRepo.findById(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    public boolean incomingExists(UUID id) {
+        return incomingRepo.existsById(id);
+    }
+
     @Transactional
     public ResponseEntity<?> deleteIncomingTransaction(UUID id) {
         if (!incomingRepo.existsById(id)) {
@@ -86,6 +134,62 @@ public class TransactionService {
         return ResponseEntity.ok("Incoming transaction deleted successfully");
     }
 
+    /**
+     * Returns one page of the account's outgoing and incoming payments merged
+     * newest first. Each side is read as a keyset range on its
+     * (account, createdAt, transactionId) index, or with a status filter one
+     * range per status on (account, status, createdAt, transactionId), so the
+     * cost of a page does not depend on how much history the account has.
+     */
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getTransactionHistory(String accountNumber, String before, int limit,
+            Collection<TransactionStatus> statuses) {
+        if (limit < 1 || limit > MAX_HISTORY_PAGE_SIZE) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "limit must be between 1 and " + MAX_HISTORY_PAGE_SIZE));
+        }
+
+        LocalDateTime beforeCreatedAt = HISTORY_START;
+        UUID beforeId = MAX_UUID;
+        if (before != null) {
+            try {
+                String[] cursor = new String(Base64.getUrlDecoder().decode(before), StandardCharsets.UTF_8).split("\\|");
+                beforeCreatedAt = LocalDateTime.parse(cursor[0]);
+                beforeId = UUID.fromString(cursor[1]);
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid history cursor"));
+            }
+        }
+
+        PageRequest page = PageRequest.ofSize(limit);
+
+        List<TransactionHistoryEntry> entries = new ArrayList<>(limit * 2);
+        if (statuses == null || statuses.isEmpty() || statuses.containsAll(EnumSet.allOf(TransactionStatus.class))) {
+            entries.addAll(outgoingRepo.findHistoryPage(accountNumber, beforeCreatedAt, beforeId, page));
+            entries.addAll(incomingRepo.findHistoryPage(accountNumber, beforeCreatedAt, beforeId, page));
+        } else {
+            // One bounded range per status; an IN list over the index would need a sort of every match
+            for (TransactionStatus status : EnumSet.copyOf(statuses)) {
+                entries.addAll(outgoingRepo.findHistoryPageByStatus(accountNumber, status, beforeCreatedAt, beforeId,
+                        page));
+                entries.addAll(incomingRepo.findHistoryPageByStatus(accountNumber, status, beforeCreatedAt, beforeId,
+                        page));
+            }
+        }
+        entries.sort(HISTORY_ORDER);
+
+        String nextCursor = null;
+        if (entries.size() > limit) {
+            entries = new ArrayList<>(entries.subList(0, limit));
+        }
+        if (entries.size() == limit) {
+            TransactionHistoryEntry last = entries.get(limit - 1);
+            String raw = last.getCreatedAt() + "|" + last.getTransactionId();
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        return ResponseEntity.ok(new TransactionHistoryPage(entries, nextCursor));
+    }
+
     // ====== Business logic ======
     /**
      * Producer: transactions.initiated
@@ -160,10 +264,8 @@ public class TransactionService {
         String message;
 
         try {
-            incomingRepo.save(transaction);
-
             AccountDTO toAccount = accountService.getAccountByNumber(event.getToAccountNumber());
-            accountService.deposit(toAccount.getAccountNumber(), event.getAmount());
+            accountService.deposit(toAccount.getAccountNumber(), event.getAmount(), event.getTransactionId());
 
             // Lyckad transaktion
             finalStatus = TransactionStatus.SUCCESS;
@@ -175,8 +277,10 @@ public class TransactionService {
             message = "Transaction failed: " + e.getMessage();
         }
 
+        // One INSERT with the final status. persist, not save: the id is assigned,
+        // so save() would merge and SELECT the row first
         transaction.setStatus(finalStatus);
-        incomingRepo.save(transaction);
+        entityManager.persist(transaction);
 
         TransactionResponseEvent response = new TransactionResponseEvent(
                 event.getTransactionId(),
@@ -193,38 +297,32 @@ public class TransactionService {
      */
     @Transactional
     public void handleCompletedTransaction(TransactionResponseEvent event) {
-        OutgoingTransaction tx = outgoingRepo.findByTransactionId(event.getTransactionId())
-                .orElse(null);
-
-        if (tx == null) {
-            log.warn("Transaction {} not found", event.getTransactionId());
-            return;
-        }
-
-        // Idempotency check: If transaction already has FAILED/SUCCESS then we have
-        // already completed the payment
-        if (tx.getStatus() == TransactionStatus.SUCCESS || tx.getStatus() == TransactionStatus.FAILED) {
-            log.info("Transaction {} already processed with status {}, skipping",
-                    event.getTransactionId(), tx.getStatus());
+        // Idempotency: only the first response moves the row out of PENDING; redeliveries match nothing
+        List<Completed> completed = jdbcTemplate.query(COMPLETE,
+                (rs, i) -> new Completed(rs.getString(1), rs.getBigDecimal(2)),
+                event.getStatus().name(), event.getTransactionId());
+        if (completed.isEmpty()) {
+            log.info("Transaction {} not found or already processed, skipping", event.getTransactionId());
             return;
         }
-
-        tx.setStatus(event.getStatus());
+        Completed tx = completed.get(0);
 
         try {
             if (event.getStatus() == TransactionStatus.SUCCESS) {
-                accountService.commitReservedFunds(tx.getFromAccountNumber(), tx.getAmount());
+                accountService.commitReservedFunds(tx.fromAccountNumber(), tx.amount(), event.getTransactionId());
                 log.info("Committed funds");
             } else {
-                accountService.releaseReservedFunds(tx.getFromAccountNumber(), tx.getAmount());
+                accountService.releaseReservedFunds(tx.fromAccountNumber(), tx.amount());
                 log.info("Released funds");
             }
         } catch (Exception e) {
-            log.error("Failed to update account balances for transaction {}: {}", tx.getTransactionId(),
+            log.error("Failed to update account balances for transaction {}: {}", event.getTransactionId(),
                     e.getMessage());
-            tx.setStatus(TransactionStatus.FAILED);
             throw new RuntimeException("Failed to update accounts", e); // force rollback
         }
+
+        // Wakes up clients parked on GET /outgoing/{id}/await once this commits
+        statusNotifier.publish(event.getTransactionId(), event.getStatus());
     }
 
     // ====== Helpers ======
@@ -238,6 +336,11 @@ public class TransactionService {
         event.setStatus(saved.getStatus());
     }
 
+    private static int compareUuids(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
     private void saveOutboxEvent(UUID transactionId, String topic, Object eventPayload) {
         try {
             String payload = objectMapper.writeValueAsString(eventPayload);
@@ -248,4 +351,7 @@ public class TransactionService {
             throw new RuntimeException("Failed to process outbox event", e);
         }
     }
+
+    private record Completed(String fromAccountNumber, BigDecimal amount) {
+    }
 }
@@ -0,0 +1,151 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.config.ReadPreference;
+import com.bankgood.bank.model.OutgoingTransaction;
+import com.bankgood.bank.model.TransactionStatus;
+import com.bankgood.bank.repository.OutgoingTransactionRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parks long-poll requests for outgoing transaction status and completes them
+ * in memory when the status leaves PENDING.
+ *
+ * Status changes are announced with pg_notify inside the changing transaction,
+ * so every pod (including this one) hears about them through
+ * PostgresNotificationListener once the transaction commits. Local waiters are
+ * also completed directly after commit so they do not depend on the listener.
+ */
+@Slf4j
+@Component
+public class TransactionStatusNotifier {
+
+    public static final String CHANNEL = "transaction_status";
+
+    @Value("${bank.status-await.max-waiters:10000}")
+    private int maxWaiters;
+
+    private final OutgoingTransactionRepository outgoingRepo;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<UUID, Set<DeferredResult<ResponseEntity<?>>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+
+    public TransactionStatusNotifier(OutgoingTransactionRepository outgoingRepo, JdbcTemplate jdbcTemplate) {
+        this.outgoingRepo = outgoingRepo;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns a DeferredResult that completes with {transactionId, status} as
+     * soon as the transaction reaches SUCCESS or FAILED, or with PENDING after
+     * timeoutMs.
+     */
+    public DeferredResult<ResponseEntity<?>> await(UUID transactionId, long timeoutMs) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(timeoutMs);
+
+        if (waiterCount.incrementAndGet() > maxWaiters) {
+            waiterCount.decrementAndGet();
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Too many parked status requests, poll instead")));
+            return result;
+        }
+
+        // Register before reading so a change between the read and the park is not lost
+        waiters.computeIfAbsent(transactionId, id -> ConcurrentHashMap.newKeySet()).add(result);
+        result.onCompletion(() -> remove(transactionId, result));
+        result.onTimeout(() -> result.setResult(statusBody(transactionId, TransactionStatus.PENDING)));
+
+        // From the primary: a lagging replica could still show PENDING after the change was announced
+        OutgoingTransaction snapshot = ReadPreference.primary(() -> outgoingRepo.findById(transactionId)).orElse(null);
+        if (snapshot == null) {
+            result.setResult(ResponseEntity.notFound().build());
+        } else if (snapshot.getStatus() != TransactionStatus.PENDING) {
+            result.setResult(statusBody(transactionId, snapshot.getStatus()));
+        }
+        return result;
+    }
+
+    /**
+     * Announces a status change. Must be called inside the transaction that
+     * made the change; nothing is delivered if it rolls back.
+     */
+    public void publish(UUID transactionId, TransactionStatus status) {
+        jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", Object.class, CHANNEL, transactionId + ":" + status);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    complete(transactionId, status);
+                }
+            });
+        } else {
+            complete(transactionId, status);
+        }
+    }
+
+    /**
+     * Announces the same status for many transactions with one statement. Same
+     * transactional rules as publish.
+     */
+    public void publishAll(Collection<UUID> transactionIds, TransactionStatus status) {
+        if (transactionIds.isEmpty()) {
+            return;
+        }
+        String[] ids = transactionIds.stream().map(UUID::toString).toArray(String[]::new);
+        jdbcTemplate.query("SELECT pg_notify(?, id || ':' || ?) FROM unnest(?::text[]) AS id",
+                rs -> { }, CHANNEL, status.name(), ids);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    transactionIds.forEach(id -> complete(id, status));
+                }
+            });
+        } else {
+            transactionIds.forEach(id -> complete(id, status));
+        }
+    }
+
+    /**
+     * Completes every request parked on the transaction. Safe to call more
+     * than once for the same change.
+     */
+    public void complete(UUID transactionId, TransactionStatus status) {
+        Set<DeferredResult<ResponseEntity<?>>> parked = waiters.remove(transactionId);
+        if (parked == null) {
+            return;
+        }
+        parked.forEach(result -> result.setResult(statusBody(transactionId, status)));
+        log.debug("Completed {} parked status requests for transaction {}", parked.size(), transactionId);
+    }
+
+    private ResponseEntity<?> statusBody(UUID transactionId, TransactionStatus status) {
+        return ResponseEntity.ok(Map.of("transactionId", transactionId, "status", status));
+    }
+
+    private void remove(UUID transactionId, DeferredResult<ResponseEntity<?>> result) {
+        waiters.computeIfPresent(transactionId, (id, parked) -> {
+            parked.remove(result);
+            return parked.isEmpty() ? null : parked;
+        });
+        waiterCount.decrementAndGet();
+    }
+}
@@ -0,0 +1,120 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.service.ArchiveSegment.Column;
+import com.bankgood.bank.service.ArchiveSegment.Header;
+import com.bankgood.bank.service.ArchiveSegment.Type;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArchiveSegmentTest {
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column("transaction_id", Type.UUID),
+            new Column("from_account_number", Type.STRING),
+            new Column("amount", Type.DECIMAL),
+            new Column("created_at", Type.TIMESTAMP),
+            new Column("batch_id", Type.UUID));
+
+    // The top bit is set in HIGH_ID's most significant long, so a signed compare would get min/max wrong
+    private static final UUID LOW_ID = new UUID(0x01a1516e38e176d2L, 1);
+    private static final UUID HIGH_ID = new UUID(0x81a1516e38e176d2L, 2);
+    private static final UUID BATCH_ID = UUID.fromString("11bb26c5-30b0-33f2-8f1c-471d81adff9e");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void decodesEveryColumnAsWritten() throws IOException {
+        LocalDateTime endOfMonth = LocalDateTime.of(2024, 1, 31, 23, 59, 59, 999_999_000);
+        LocalDateTime startOfMonth = LocalDateTime.of(2024, 2, 1, 0, 0, 0, 1_000);
+        List<Object[]> rows = List.of(
+                new Object[] { HIGH_ID, "A2", new BigDecimal("1.50"), endOfMonth, BATCH_ID },
+                new Object[] { LOW_ID, "A1", new BigDecimal("1000000.00"), startOfMonth, null },
+                new Object[] { new UUID(0, 3), "A3", new BigDecimal("0.01"), startOfMonth, null });
+
+        Header header = ArchiveSegment.write(directory, "seg-1", "outgoing_transactions", COLUMNS,
+                "from_account_number", rows);
+
+        assertThat(header.rows()).isEqualTo(3);
+        for (int c = 0; c < COLUMNS.size(); c++) {
+            Object[] values = ArchiveSegment.readColumn(header, COLUMNS.get(c));
+            for (int r = 0; r < rows.size(); r++) {
+                assertThat(values[r]).as("row %d, column %s", r, COLUMNS.get(c).name()).isEqualTo(rows.get(r)[c]);
+            }
+        }
+    }
+
+    @Test
+    void roundTripsTimestampsAcrossTheEpochAtMicrosecondPrecision() throws IOException {
+        List<LocalDateTime> times = List.of(
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1_000),
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000),
+                LocalDateTime.of(1970, 1, 1, 0, 0),
+                LocalDateTime.of(1970, 1, 1, 0, 0, 0, 1_000),
+                LocalDateTime.of(2038, 1, 19, 3, 14, 8, 123_456_000),
+                LocalDateTime.of(9999, 12, 31, 23, 59, 59, 999_999_000));
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < times.size(); i++) {
+            rows.add(new Object[] { new UUID(0, i), "A1", BigDecimal.ONE, times.get(i), null });
+        }
+
+        Header header = ArchiveSegment.write(directory, "seg-times", "incoming_transactions", COLUMNS,
+                "from_account_number", rows);
+
+        assertThat(ArchiveSegment.readColumn(header, COLUMNS.get(3))).containsExactlyElementsOf(times);
+        assertThat(header.minCreatedAt()).isEqualTo(times.get(0));
+        assertThat(header.maxCreatedAt()).isEqualTo(times.get(times.size() - 1));
+    }
+
+    @Test
+    void headerPrunesByTimeAccountAndId() throws IOException {
+        LocalDateTime first = LocalDateTime.of(2024, 3, 1, 10, 0);
+        LocalDateTime last = LocalDateTime.of(2024, 3, 31, 10, 0);
+        List<Object[]> rows = List.of(
+                new Object[] { HIGH_ID, "B7", BigDecimal.TEN, first, null },
+                new Object[] { LOW_ID, "B2", BigDecimal.TEN, last, null });
+
+        ArchiveSegment.write(directory, "seg-prune", "outgoing_transactions", COLUMNS, "from_account_number", rows);
+        Header header = ArchiveSegment.readHeader(directory.resolve("seg-prune" + ArchiveSegment.SUFFIX));
+
+        assertThat(header.table()).isEqualTo("outgoing_transactions");
+        assertThat(header.minId()).isEqualTo(LOW_ID);
+        assertThat(header.maxId()).isEqualTo(HIGH_ID);
+        assertThat(header.mayContainId(new UUID(0x41a1516e38e176d2L, 0))).isTrue();
+        assertThat(header.mayContainId(new UUID(0, 0))).isFalse();
+        assertThat(header.mayContainId(new UUID(-1, -1))).isFalse();
+
+        assertThat(header.mayContainAccount("B5")).isTrue();
+        assertThat(header.mayContainAccount("B1")).isFalse();
+        assertThat(header.mayContainAccount("B8")).isFalse();
+
+        // from is inclusive, to exclusive
+        assertThat(header.overlaps(last, null)).isTrue();
+        assertThat(header.overlaps(null, first)).isFalse();
+        assertThat(header.overlaps(null, first.plusNanos(1_000))).isTrue();
+        assertThat(header.overlaps(last.plusNanos(1_000), null)).isFalse();
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSegments() throws IOException {
+        Path other = directory.resolve("other" + ArchiveSegment.SUFFIX);
+        Files.write(other, new byte[] { 0, 0, 0, 4, 1, 2, 3, 4 });
+
+        assertThatThrownBy(() -> ArchiveSegment.readHeader(other))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not an archive segment");
+    }
+}
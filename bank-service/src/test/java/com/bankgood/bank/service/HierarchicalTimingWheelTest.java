@@ -0,0 +1,124 @@
+package com.bankgood.bank.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MS = 1000;
+    // Not a multiple of anything in particular, so slot boundaries fall mid-way through the wheel's laps
+    private static final long START_MS = 1_700_000_123_456L;
+
+    @Test
+    void neverFiresBeforeTheDeadline() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, 3, START_MS);
+        wheel.add("a", START_MS + 1500);
+
+        assertThat(wheel.advance(START_MS + 1499)).isEmpty();
+        assertThat(wheel.advance(START_MS + 1500)).isEmpty();
+        // Due from the first tick at or after the deadline
+        long dueTick = Math.floorDiv(START_MS + 1500 + TICK_MS - 1, TICK_MS) * TICK_MS;
+        assertThat(wheel.advance(dueTick - 1)).isEmpty();
+        assertThat(wheel.advance(dueTick)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void firesPastDeadlinesOnTheNextAdvance() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, 3, START_MS);
+        wheel.add("late", START_MS - 60_000);
+        wheel.add("now", START_MS);
+
+        assertThat(wheel.size()).isEqualTo(2);
+        assertThat(wheel.advance(START_MS)).containsExactly("late");
+        // START_MS lies inside a tick, and rounding up keeps "now" from firing early
+        assertThat(wheel.advance(START_MS + TICK_MS)).containsExactly("now");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cascadesEntriesDownEveryLevelToTheirExactTick() {
+        // 3 levels of 64 slots: level 0 covers 64 ticks, level 1 4096, level 2 262144
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 3, START_MS);
+        long[] deltas = { 1, 2, 63, 64, 65, 127, 128, 4095, 4096, 4097, 8191, 8192, 100_000, 262_143 };
+        for (long delta : deltas) {
+            wheel.add(delta, START_MS + delta * TICK_MS);
+        }
+
+        Map<Long, Long> firedAt = advanceTickByTick(wheel, 262_144);
+
+        assertThat(firedAt).hasSize(deltas.length);
+        for (long delta : deltas) {
+            assertThat(firedAt.get(delta)).as("entry %d ticks ahead", delta).isEqualTo(expectedTick(delta));
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void holdsEntriesBeyondTheTopLevelUntilTheyAreDue() {
+        // 2 levels cover 4096 ticks; these wait in the top level's last lap and cascade again
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 2, START_MS);
+        long[] deltas = { 4096, 5000, 10_000, 20_000 };
+        for (long delta : deltas) {
+            wheel.add(delta, START_MS + delta * TICK_MS);
+        }
+
+        Map<Long, Long> firedAt = advanceTickByTick(wheel, 20_001);
+
+        for (long delta : deltas) {
+            assertThat(firedAt.get(delta)).as("entry %d ticks ahead", delta).isEqualTo(expectedTick(delta));
+        }
+    }
+
+    @Test
+    void returnsEverythingDueWhenAdvancingManyTicksAtOnce() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 3, START_MS);
+        for (long delta = 1; delta <= 10_000; delta += 37) {
+            wheel.add(delta, START_MS + delta * TICK_MS);
+        }
+        int added = wheel.size();
+
+        List<Long> firstHalf = wheel.advance(START_MS + 5_000 * TICK_MS);
+        assertThat(firstHalf).allMatch(delta -> expectedTick(delta) <= START_MS / TICK_MS + 5_000);
+        List<Long> rest = wheel.advance(START_MS + 10_001 * TICK_MS);
+        assertThat(rest).allMatch(delta -> expectedTick(delta) > START_MS / TICK_MS + 5_000);
+
+        assertThat(firstHalf.size() + rest.size()).isEqualTo(added);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void acceptsEntriesAddedWhileTheWheelIsRunning() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 3, START_MS);
+        wheel.advance(START_MS + 1_000 * TICK_MS);
+        long now = START_MS + 1_000 * TICK_MS;
+        // Past one level-0 rotation, so it starts in level 1; now lies inside a tick, so it is due one tick later
+        wheel.add(1L, now + 70 * TICK_MS);
+
+        assertThat(wheel.advance(now + 70 * TICK_MS)).isEmpty();
+        assertThat(wheel.advance(now + 71 * TICK_MS)).containsExactly(1L);
+    }
+
+    // ====== Helpers ======
+
+    // Wheel tick at which an entry added delta ticks after START_MS becomes due
+    private static long expectedTick(long delta) {
+        return Math.floorDiv(START_MS + delta * TICK_MS + TICK_MS - 1, TICK_MS);
+    }
+
+    private static Map<Long, Long> advanceTickByTick(HierarchicalTimingWheel<Long> wheel, long ticks) {
+        Map<Long, Long> firedAt = new HashMap<>();
+        long startTick = START_MS / TICK_MS;
+        for (long tick = startTick + 1; tick <= startTick + ticks + 1; tick++) {
+            for (Long delta : wheel.advance(tick * TICK_MS)) {
+                assertThat(firedAt.put(delta, tick)).as("entry %d fired twice", delta).isNull();
+            }
+        }
+        return firedAt;
+    }
+}
@@ -0,0 +1,101 @@
+package com.bankgood.bank.service;
+
+import com.bankgood.bank.service.ReconciliationService.Row;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReconciliationServiceTest {
+
+    // Sorted as Postgres sorts uuids: the last two have the top bit set, which a signed compare puts first
+    private static final UUID ID_1 = new UUID(0x0000000000007000L, 1);
+    private static final UUID ID_2 = new UUID(0x0000000000007000L, 2);
+    private static final UUID ID_3 = new UUID(0x7FFFFFFFFFFF7000L, 0);
+    private static final UUID ID_4 = new UUID(0x8000000000007000L, 0);
+    private static final UUID ID_5 = new UUID(0xFFFFFFFFFFFF7000L, -1);
+
+    @Test
+    void joinsRowsWithTheSameId() throws Exception {
+        List<String> joined = join(
+                List.of(row(ID_1, "1.00", "SUCCESS"), row(ID_2, "2.00", "PENDING")),
+                List.of(row(ID_1, "1.00", "SUCCESS"), row(ID_2, "2.00", "SUCCESS")));
+
+        assertThat(joined).containsExactly(
+                ID_1 + " SUCCESS/SUCCESS",
+                ID_2 + " PENDING/SUCCESS");
+    }
+
+    @Test
+    void reportsRowsMissingOnEitherSide() throws Exception {
+        List<String> joined = join(
+                List.of(row(ID_1, "1.00", "SUCCESS"), row(ID_3, "3.00", "SUCCESS"), row(ID_5, "5.00", "FAILED")),
+                List.of(row(ID_2, "2.00", "SUCCESS"), row(ID_3, "3.00", "SUCCESS"), row(ID_4, "4.00", "SUCCESS")));
+
+        assertThat(joined).containsExactly(
+                ID_1 + " SUCCESS/-",
+                ID_2 + " -/SUCCESS",
+                ID_3 + " SUCCESS/SUCCESS",
+                ID_4 + " -/SUCCESS",
+                ID_5 + " FAILED/-");
+    }
+
+    @Test
+    void drainsTheLongerSideOnceTheOtherIsExhausted() throws Exception {
+        assertThat(join(List.of(), List.of(row(ID_1, "1.00", "SUCCESS"), row(ID_4, "4.00", "SUCCESS"))))
+                .containsExactly(ID_1 + " -/SUCCESS", ID_4 + " -/SUCCESS");
+        assertThat(join(List.of(row(ID_4, "4.00", "SUCCESS"), row(ID_5, "5.00", "SUCCESS")), List.of()))
+                .containsExactly(ID_4 + " SUCCESS/-", ID_5 + " SUCCESS/-");
+        assertThat(join(List.of(), List.of())).isEmpty();
+    }
+
+    @Test
+    void ordersIdsAsUnsignedValues() throws Exception {
+        // ID_4 is negative as a signed long; it must still come after ID_3 on both sides
+        List<String> joined = join(
+                List.of(row(ID_3, "3.00", "SUCCESS"), row(ID_4, "4.00", "SUCCESS")),
+                List.of(row(ID_4, "4.00", "SUCCESS")));
+
+        assertThat(joined).containsExactly(ID_3 + " SUCCESS/-", ID_4 + " SUCCESS/SUCCESS");
+    }
+
+    @Test
+    void rejectsRowsOutOfIdOrder() {
+        assertThatThrownBy(() -> join(
+                List.of(row(ID_4, "4.00", "SUCCESS"), row(ID_3, "3.00", "SUCCESS")),
+                List.of()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Bank rows are not in transaction id order");
+        assertThatThrownBy(() -> join(
+                List.of(),
+                List.of(row(ID_2, "2.00", "SUCCESS"), row(ID_2, "2.00", "SUCCESS"))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Clearing rows are not in transaction id order");
+    }
+
+    // ====== Helpers ======
+
+    private static List<String> join(List<Row> bank, List<Row> clearing) throws Exception {
+        List<String> joined = new ArrayList<>();
+        ReconciliationService.mergeJoin(source(bank), source(clearing), (ours, theirs) -> joined.add(
+                (ours != null ? ours.id() : theirs.id()) + " "
+                        + (ours != null ? ours.status() : "-") + "/" + (theirs != null ? theirs.status() : "-")));
+        return joined;
+    }
+
+    private static ReconciliationService.RowSource source(List<Row> rows) {
+        Iterator<Row> iterator = rows.iterator();
+        return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static Row row(UUID id, String amount, String status) {
+        return new Row(id, new BigDecimal(amount), status);
+    }
+}
@@ -0,0 +1,44 @@
+package com.clearingservice.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Whether the current thread may read from a replica. ReplicaReadFilter
+ * allows it for query requests; writes, jobs and listeners always read the
+ * primary.
+ */
+public final class ReadPreference {
+
+    private static final ThreadLocal<Boolean> REPLICA = new ThreadLocal<>();
+
+    private ReadPreference() {
+    }
+
+    public static boolean replicaAllowed() {
+        return Boolean.TRUE.equals(REPLICA.get());
+    }
+
+    public static void allowReplica() {
+        REPLICA.set(Boolean.TRUE);
+    }
+
+    public static void clear() {
+        REPLICA.remove();
+    }
+
+    /**
+     * Runs the action against the primary even inside a query request, for
+     * reads that must see the latest commit.
+     */
+    public static <T> T primary(Supplier<T> action) {
+        Boolean previous = REPLICA.get();
+        REPLICA.remove();
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                REPLICA.set(previous);
+            }
+        }
+    }
+}
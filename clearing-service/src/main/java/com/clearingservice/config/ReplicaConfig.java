@@ -0,0 +1,61 @@
+package com.clearingservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves query endpoints from read replicas.
+ *
+ * Enabled by clearing.replicas.urls, a comma-separated list of JDBC URLs of
+ * replicas of spring.datasource. Every replica gets its own read-only Hikari
+ * pool with the spring.datasource credentials and hikari settings.
+ *
+ * Only read-only transactions of GET requests (ReplicaReadFilter) use a
+ * replica, and only one within clearing.replicas.max-lag-ms of the primary.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("!'${clearing.replicas.urls:}'.isEmpty()")
+public class ReplicaConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${clearing.replicas.urls}") List<String> urls,
+                                 @Value("${clearing.replicas.max-lag-ms:1000}") long maxLagMs) {
+        HikariDataSource primary = pool(properties, environment, properties.determineUrl(), "clearing-primary");
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls.stream().map(String::trim).filter(url -> !url.isEmpty()).toList()) {
+            HikariDataSource replica = pool(properties, environment, url, "clearing-replica-" + replicas.size());
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        log.info("Routing read-only queries to {} read replicas", replicas.size());
+        return new ReplicaRoutingDataSource.Lazy(new ReplicaRoutingDataSource(primary, replicas, maxLagMs));
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment environment, String url,
+                                         String poolName) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(poolName);
+        return pool;
+    }
+}
@@ -0,0 +1,109 @@
+package com.clearingservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A database and its read replicas. A connection comes from a replica, round
+ * robin, when it is used by a read-only transaction on a thread that may read
+ * from replicas (ReadPreference), and from the primary otherwise.
+ *
+ * Replicas whose last measured lag (see ReplicaLagMonitor) exceeds maxLagMs,
+ * or that have not been measured yet, are skipped; with none left, reads go
+ * to the primary.
+ *
+ * Use it through {@link Lazy}: the read-only flag of a transaction is only
+ * set after its connection has been requested.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final int PRIMARY = -1;
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long maxLagMs;
+    private final AtomicLongArray lagMs;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long maxLagMs) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMs = maxLagMs;
+        this.lagMs = new AtomicLongArray(replicas.size());
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            targets.put(replica, replicas.get(replica));
+            lagMs.set(replica, Long.MAX_VALUE);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        // Not a bean of its own, so nothing else initializes it
+        afterPropertiesSet();
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    // Long.MAX_VALUE marks a replica that could not be reached
+    public void setLag(int replica, long lag) {
+        lagMs.set(replica, lag);
+    }
+
+    public boolean isUsable(int replica) {
+        return lagMs.get(replica) <= maxLagMs;
+    }
+
+    public void close() {
+        if (primary instanceof HikariDataSource pool) {
+            pool.close();
+        }
+        for (DataSource replica : replicas) {
+            if (replica instanceof HikariDataSource pool) {
+                pool.close();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!ReadPreference.replicaAllowed() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = (start + i) % replicas.size();
+            if (isUsable(replica)) {
+                return replica;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Defers choosing between primary and replica until the connection is
+     * first used, and closes the pools on shutdown.
+     */
+    public static class Lazy extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+        public Lazy(ReplicaRoutingDataSource target) {
+            super(target);
+        }
+
+        @Override
+        public void close() {
+            ((ReplicaRoutingDataSource) obtainTargetDataSource()).close();
+        }
+    }
+}
@@ -3,10 +3,13 @@ package com.clearingservice.controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.clearingservice.event.BankMappingImportResult;
 import com.clearingservice.model.BankMapping;
+import com.clearingservice.service.BankMappingImportService;
 import com.clearingservice.service.BankMappingService;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -14,15 +17,27 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
 
 
 @RestController
 @RequestMapping("/clearing/bank-mapping")
 public class BankMappingController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final BankMappingService bankMappingService;
+    private final BankMappingImportService importService;
 
-    public BankMappingController(BankMappingService bankMappingService) {
+    public BankMappingController(BankMappingService bankMappingService, BankMappingImportService importService) {
         this.bankMappingService = bankMappingService;
+        this.importService = importService;
     }
 
     // ================= CREATE =================
@@ -32,6 +47,36 @@ public class BankMappingController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    // ================= BULK =================
+    // mode=UPSERT inserts and updates; mode=REPLACE also deletes mappings missing from the file
+    @PostMapping(value = "/import", consumes = { "text/csv", "application/x-ndjson" })
+    public ResponseEntity<?> importBankMappings(
+            @RequestHeader("Content-Type") MediaType contentType,
+            @RequestParam(defaultValue = "UPSERT") BankMappingImportService.Mode mode,
+            InputStream body) {
+        BankMappingImportService.Format format = NDJSON.isCompatibleWith(contentType)
+                ? BankMappingImportService.Format.NDJSON
+                : BankMappingImportService.Format.CSV;
+        try {
+            BankMappingImportResult result = importService.importMappings(body, format, mode);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/export")
+    public void exportBankMappings(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv");
+        importService.exportMappings(response.getOutputStream(),
+                version -> response.setHeader("X-Directory-Version", String.valueOf(version)));
+    }
+
+    @GetMapping("/version")
+    public ResponseEntity<?> fetchDirectoryVersion() {
+        return ResponseEntity.ok(Map.of("version", bankMappingService.getCurrentVersion()));
+    }
+
     // ================= READ =================
     @GetMapping("/{bankgoodNumber}")
     public ResponseEntity<?> fetchBankMapping(@PathVariable String bankgoodNumber) {
@@ -0,0 +1,50 @@
+package com.clearingservice.controller;
+
+import com.clearingservice.event.BankExposureReport;
+import com.clearingservice.service.ExposureTracker;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/clearing/exposure")
+public class ExposureController {
+
+    private final ExposureTracker exposureTracker;
+
+    public ExposureController(ExposureTracker exposureTracker) {
+        this.exposureTracker = exposureTracker;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<BankExposureReport>> getExposures() {
+        return ResponseEntity.ok(exposureTracker.getExposures());
+    }
+
+    @GetMapping("/{clearingNumber}")
+    public ResponseEntity<BankExposureReport> getExposure(@PathVariable String clearingNumber) {
+        return exposureTracker.getExposure(clearingNumber)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // {"debitCap": 1000000.00}; a null cap falls back to clearing.exposure.default-debit-cap
+    @PutMapping("/{clearingNumber}/debit-cap")
+    public ResponseEntity<?> setDebitCap(@PathVariable String clearingNumber,
+                                         @RequestBody Map<String, BigDecimal> body) {
+        try {
+            return ResponseEntity.ok(exposureTracker.setDebitCap(clearingNumber, body.get("debitCap")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.clearingservice.controller;
+
+import com.clearingservice.event.FileIngestionReport;
+import com.clearingservice.service.Pain001IngestionService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/clearing/files")
+public class FileIngestionController {
+
+    private final Pain001IngestionService ingestionService;
+
+    public FileIngestionController(Pain001IngestionService ingestionService) {
+        this.ingestionService = ingestionService;
+    }
+
+    // ===================== INGEST =====================
+    // The body is streamed, never buffered. Pass fileId to poll progress while the upload runs.
+    @PostMapping(value = "/pain001", consumes = { "application/xml", "text/xml" })
+    public ResponseEntity<?> ingestPain001(@RequestParam(required = false) UUID fileId,
+                                           InputStream body) {
+        FileIngestionReport report = ingestionService.ingest(fileId != null ? fileId : UUID.randomUUID(), body);
+        HttpStatus status = "FAILED".equals(report.getStatus()) ? HttpStatus.UNPROCESSABLE_ENTITY : HttpStatus.OK;
+        return ResponseEntity.status(status).body(report);
+    }
+
+    // ===================== PROGRESS =====================
+    @GetMapping("/{fileId}")
+    public ResponseEntity<?> getReport(@PathVariable UUID fileId) {
+        return ingestionService.getReport(fileId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,42 @@
+package com.clearingservice.controller;
+
+import com.clearingservice.event.PartitionInfo;
+import com.clearingservice.service.TransactionPartitionManager;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/clearing/partitions")
+public class PartitionController {
+
+    private final TransactionPartitionManager partitionManager;
+
+    public PartitionController(TransactionPartitionManager partitionManager) {
+        this.partitionManager = partitionManager;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<PartitionInfo>> getPartitions() {
+        return ResponseEntity.ok(partitionManager.getPartitions());
+    }
+
+    // Detached partitions stay in the database as standalone tables
+    @PostMapping("/detach")
+    public ResponseEntity<?> detach(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before) {
+        try {
+            return ResponseEntity.ok(partitionManager.detachBefore(before));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
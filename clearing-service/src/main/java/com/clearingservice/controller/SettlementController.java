@@ -0,0 +1,48 @@
+package com.clearingservice.controller;
+
+import com.clearingservice.event.SettlementReport;
+import com.clearingservice.service.SettlementService;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/clearing/settlement")
+public class SettlementController {
+
+    private final SettlementService settlementService;
+
+    public SettlementController(SettlementService settlementService) {
+        this.settlementService = settlementService;
+    }
+
+    // Live positions of the window that has not been cut off yet
+    @GetMapping("/open")
+    public ResponseEntity<SettlementReport> getOpenWindow() {
+        return ResponseEntity.ok(settlementService.getOpenWindow());
+    }
+
+    // Closes the open window now instead of at the next scheduled cut-off
+    @PostMapping("/cutoff")
+    public ResponseEntity<SettlementReport> cutOff() {
+        return ResponseEntity.ok(settlementService.cutOff());
+    }
+
+    @GetMapping("/cycles/latest")
+    public ResponseEntity<SettlementReport> getLatestCycle() {
+        return settlementService.getLatestCycle()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/cycles/{cycleId}")
+    public ResponseEntity<SettlementReport> getCycle(@PathVariable Long cycleId) {
+        return settlementService.getCycle(cycleId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -2,10 +2,13 @@ package com.clearingservice.controller;
 
 import com.clearingservice.event.OutgoingTransactionEvent;
 import com.clearingservice.event.TransactionResponseEvent;
+import com.clearingservice.service.ReconciliationExportService;
 import com.clearingservice.service.TransactionService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.UUID;
 
@@ -13,10 +16,15 @@ import java.util.UUID;
 @RequestMapping("/clearing/transaction")
 public class TransactionController {
 
+    private static final UUID MIN_ID = new UUID(0, 0);
+    private static final UUID MAX_ID = new UUID(-1, -1);
+
     private final TransactionService transactionService;
+    private final ReconciliationExportService exportService;
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, ReconciliationExportService exportService) {
         this.transactionService = transactionService;
+        this.exportService = exportService;
     }
 
     // ===================== OUTGOING TRANSACTIONS =====================
@@ -46,6 +54,26 @@ public class TransactionController {
         }
     }
 
+    // ===================== RECONCILIATION =====================
+    // CSV of transaction_id, amount, status in id order; from is inclusive, to exclusive
+    @GetMapping("/export")
+    public void exportForReconciliation(
+            @RequestParam String clearingNumber,
+            @RequestParam ReconciliationExportService.Direction direction,
+            @RequestParam(required = false) UUID from,
+            @RequestParam(required = false) UUID to,
+            HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv");
+        try {
+            exportService.export(response.getOutputStream(), clearingNumber, direction,
+                    from != null ? from : MIN_ID, to != null ? to : MAX_ID);
+        } catch (IllegalArgumentException e) {
+            // Nothing is written before the check, so the CSV content type can still be dropped
+            response.reset();
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        }
+    }
+
     // ===================== FETCH TRANSACTION =====================
     @GetMapping("/{transactionId}")
     public ResponseEntity<?> getOutgoingTransactionById(@PathVariable UUID transactionId) {
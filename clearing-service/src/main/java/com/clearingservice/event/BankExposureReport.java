@@ -0,0 +1,17 @@
+package com.clearingservice.event;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class BankExposureReport {
+    private String clearingNumber;
+    private BigDecimal exposure; // forwarded and not yet settled
+    private BigDecimal debitCap; // null when uncapped
+    private BigDecimal available; // null when uncapped
+}
@@ -0,0 +1,14 @@
+package com.clearingservice.event;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class BankMappingImportReject {
+    private long line;
+    private String bankgoodNumber;
+    private String reason;
+}
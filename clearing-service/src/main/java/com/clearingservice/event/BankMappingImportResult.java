@@ -0,0 +1,25 @@
+package com.clearingservice.event;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class BankMappingImportResult {
+    private Long version; // directory version published by this import
+    private String mode;  // UPSERT or REPLACE
+    private long rowsRead;
+    private long inserted;
+    private long updated;
+    private long unchanged;
+    private long deleted;    // REPLACE only: mappings missing from the file
+    private long duplicates; // bankgoodNumber repeated in the file, the last line wins
+    private long rejected;
+    private List<BankMappingImportReject> rejects = new ArrayList<>(); // capped
+    private long elapsedMs;
+}
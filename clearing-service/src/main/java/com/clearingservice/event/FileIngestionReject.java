@@ -0,0 +1,13 @@
+package com.clearingservice.event;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class FileIngestionReject {
+    private String reference; // EndToEndId, or the transaction ordinal when it is missing
+    private String reason;
+}
@@ -0,0 +1,32 @@
+package com.clearingservice.event;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Progress and outcome of one pain.001 file. Counters are updated after every
+ * routed chunk, so the report can be polled while the file is still running.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class FileIngestionReport {
+    private UUID fileId;
+    private String messageId;
+    private String status; // RUNNING, COMPLETED, FAILED
+    private long transactionsRead;
+    private long forwarded;
+    private long rejected;
+    private long duplicates;
+    // Read by progress polls while the file is still being parsed; capped, see Pain001IngestionService
+    private List<FileIngestionReject> rejects = new CopyOnWriteArrayList<>();
+    private String error;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
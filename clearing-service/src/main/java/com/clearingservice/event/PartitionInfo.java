@@ -0,0 +1,18 @@
+package com.clearingservice.event;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class PartitionInfo {
+    private String table;
+    private String partition;
+    private LocalDateTime from; // inclusive, null for MINVALUE
+    private LocalDateTime to; // exclusive, null for MAXVALUE
+    private long estimatedRows;
+}
@@ -0,0 +1,25 @@
+package com.clearingservice.event;
+
+import com.clearingservice.model.SettlementObligation;
+import com.clearingservice.model.SettlementPosition;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+public class SettlementReport {
+    private Long cycleId; // null for the open window
+    private LocalDateTime windowStart;
+    private LocalDateTime cutoff; // null for the open window
+    private long payments;
+    private BigDecimal grossAmount;
+    private BigDecimal netAmount;
+    private List<SettlementObligation> obligations;
+    private List<SettlementPosition> positions;
+}
@@ -0,0 +1,49 @@
+package com.clearingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row per published change of the bank directory (bank_mappings). The
+ * row is written in the same transaction as the change, so a version number
+ * always describes a fully applied directory.
+ */
+@Entity
+@Table(name = "bank_directory_versions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BankDirectoryVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long version;
+
+    @Column(nullable = false)
+    private String source; // CREATE, UPDATE, DELETE, IMPORT_UPSERT, IMPORT_REPLACE
+
+    @Column(nullable = false)
+    private long inserted;
+
+    @Column(nullable = false)
+    private long updated;
+
+    @Column(nullable = false)
+    private long deleted;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime publishedAt;
+
+    public BankDirectoryVersion(String source, long inserted, long updated, long deleted) {
+        this.source = source;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.deleted = deleted;
+    }
+}
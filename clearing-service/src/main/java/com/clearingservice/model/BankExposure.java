@@ -0,0 +1,33 @@
+package com.clearingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A bank's debit cap and its last checkpointed exposure: what it has sent
+ * through clearing and not yet settled. The live exposure is held in memory
+ * by ExposureTracker; this row is its periodic checkpoint.
+ */
+@Entity
+@Table(name = "bank_exposures")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BankExposure {
+
+    @Id
+    @Column(updatable = false, nullable = false)
+    private String clearingNumber;
+
+    private BigDecimal debitCap; // null for clearing.exposure.default-debit-cap
+
+    @Column(nullable = false)
+    private BigDecimal exposure;
+
+    private LocalDateTime checkpointedAt;
+}
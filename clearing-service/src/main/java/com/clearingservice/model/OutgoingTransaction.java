@@ -20,7 +20,9 @@ public class OutgoingTransaction {
 
     @Id
     // @GeneratedValue(strategy = GenerationType.UUID)
-    @Column(unique = true, updatable = false, nullable = false)
+    // Primary key is (transaction_id, created_at) in the partitioned table; the id
+    // alone is kept unique in outgoing_transactions_ids (see TransactionPartitionManager)
+    @Column(updatable = false, nullable = false)
     private UUID transactionId;
 
     @Column(nullable = false)
@@ -32,6 +34,9 @@ public class OutgoingTransaction {
     @Column(nullable = false)
     private String toBankgoodNumber;
 
+    // The bank it was routed to; null when no bank mapping matched
+    private String toClearingNumber;
+
     @Column(nullable = false)
     private BigDecimal amount;
 
@@ -40,13 +45,16 @@ public class OutgoingTransaction {
     private TransactionStatus status = TransactionStatus.PENDING; // PENDING, SUCCESS, FAILED
 
     @CreationTimestamp
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    // Start of the settlement window a successful payment was netted in (see SettlementService)
+    private LocalDateTime settlementWindow;
+
     public OutgoingTransaction(UUID transactionId, String fromClearingNumber,
             String fromAccountNumber,
             String toBankgoodNumber, BigDecimal amount) {
@@ -0,0 +1,50 @@
+package com.clearingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One closed settlement window: the payments completed in [windowStart,
+ * cutoff). Written in the same transaction as its positions and obligations.
+ */
+@Entity
+@Table(name = "settlement_cycles")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettlementCycle {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDateTime windowStart;
+
+    @Column(nullable = false)
+    private LocalDateTime cutoff;
+
+    @Column(nullable = false)
+    private long payments;
+
+    @Column(nullable = false)
+    private BigDecimal grossAmount;
+
+    // Sum of what the net payers transfer; equals what the net receivers get
+    @Column(nullable = false)
+    private BigDecimal netAmount;
+
+    public SettlementCycle(LocalDateTime windowStart, LocalDateTime cutoff, long payments, BigDecimal grossAmount,
+                           BigDecimal netAmount) {
+        this.windowStart = windowStart;
+        this.cutoff = cutoff;
+        this.payments = payments;
+        this.grossAmount = grossAmount;
+        this.netAmount = netAmount;
+    }
+}
@@ -0,0 +1,49 @@
+package com.clearingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * A bank's multilateral net position in a settlement cycle: what it received
+ * from all other banks minus what it paid them. Negative means the bank
+ * transfers that amount at settlement, positive that it receives it.
+ */
+@Entity
+@Table(name = "settlement_obligations", indexes = {
+        @Index(name = "idx_settlement_obligation_cycle", columnList = "cycleId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettlementObligation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long cycleId; // null for the open window
+
+    @Column(nullable = false)
+    private String clearingNumber;
+
+    @Column(nullable = false)
+    private BigDecimal paid;
+
+    @Column(nullable = false)
+    private BigDecimal received;
+
+    @Column(nullable = false)
+    private BigDecimal net;
+
+    public SettlementObligation(Long cycleId, String clearingNumber, BigDecimal paid, BigDecimal received) {
+        this.cycleId = cycleId;
+        this.clearingNumber = clearingNumber;
+        this.paid = paid;
+        this.received = received;
+        this.net = received.subtract(paid);
+    }
+}
@@ -0,0 +1,48 @@
+package com.clearingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Gross amount one bank paid another in a settlement cycle.
+ */
+@Entity
+@Table(name = "settlement_positions", indexes = {
+        @Index(name = "idx_settlement_position_cycle", columnList = "cycleId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettlementPosition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long cycleId; // null for the open window
+
+    @Column(nullable = false)
+    private String payerClearingNumber;
+
+    @Column(nullable = false)
+    private String payeeClearingNumber;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private long payments;
+
+    public SettlementPosition(Long cycleId, String payerClearingNumber, String payeeClearingNumber,
+                              BigDecimal amount, long payments) {
+        this.cycleId = cycleId;
+        this.payerClearingNumber = payerClearingNumber;
+        this.payeeClearingNumber = payeeClearingNumber;
+        this.amount = amount;
+        this.payments = payments;
+    }
+}
@@ -0,0 +1,12 @@
+package com.clearingservice.repository;
+
+import com.clearingservice.model.BankDirectoryVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BankDirectoryVersionRepository extends JpaRepository<BankDirectoryVersion, Long> {
+    Optional<BankDirectoryVersion> findTopByOrderByVersionDesc();
+}
@@ -0,0 +1,9 @@
+package com.clearingservice.repository;
+
+import com.clearingservice.model.BankExposure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BankExposureRepository extends JpaRepository<BankExposure, String> {
+}
@@ -4,6 +4,8 @@ import com.clearingservice.model.BankMapping;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -11,5 +13,6 @@ import java.util.UUID;
 public interface BankMappingRepository extends JpaRepository<BankMapping, UUID> {
     Optional<BankMapping> findByBankgoodNumber(String bankgoodNumber);
     boolean existsByBankgoodNumber(String bankgoodNumber);
+    List<BankMapping> findByBankgoodNumberIn(Collection<String> bankgoodNumbers);
 }
 
@@ -2,10 +2,16 @@ package com.clearingservice.repository;
 
 import com.clearingservice.model.OutgoingTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface OutgoingTransactionRepository extends JpaRepository<OutgoingTransaction, UUID> {
     Optional<OutgoingTransaction> findByTransactionId(UUID transactionId);
+
+    @Query("SELECT t.transactionId FROM OutgoingTransaction t WHERE t.transactionId IN :transactionIds")
+    List<UUID> findExistingIds(Collection<UUID> transactionIds);
 }
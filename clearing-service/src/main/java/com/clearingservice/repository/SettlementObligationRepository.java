@@ -0,0 +1,12 @@
+package com.clearingservice.repository;
+
+import com.clearingservice.model.SettlementObligation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SettlementObligationRepository extends JpaRepository<SettlementObligation, Long> {
+    List<SettlementObligation> findByCycleIdOrderByClearingNumber(Long cycleId);
+}
@@ -0,0 +1,12 @@
+package com.clearingservice.repository;
+
+import com.clearingservice.model.SettlementPosition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SettlementPositionRepository extends JpaRepository<SettlementPosition, Long> {
+    List<SettlementPosition> findByCycleIdOrderByPayerClearingNumberAscPayeeClearingNumberAsc(Long cycleId);
+}
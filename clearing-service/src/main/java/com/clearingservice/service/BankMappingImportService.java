@@ -0,0 +1,296 @@
+package com.clearingservice.service;
+
+import com.clearingservice.event.BankMappingImportReject;
+import com.clearingservice.event.BankMappingImportResult;
+import com.clearingservice.model.BankMapping;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+
+/**
+ * Bulk import and export of the bank directory (bank_mappings).
+ *
+ * An import streams the file into a temporary staging table with COPY and
+ * applies it with one INSERT ... ON CONFLICT DO UPDATE (and, in REPLACE mode,
+ * one DELETE of mappings missing from the file). The whole import, including
+ * its directory version row, commits in one transaction, so routing sees
+ * either the previous directory or the new one, never a mix.
+ *
+ * Accepted formats:
+ * CSV    bankgoodNumber,clearingNumber,accountNumber,bankName (header line optional)
+ * NDJSON one BankMapping object per line
+ */
+@Slf4j
+@Service
+public class BankMappingImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    public enum Mode { UPSERT, REPLACE }
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String CREATE_STAGING = "CREATE TEMP TABLE bank_mapping_import ("
+            + "line bigint NOT NULL, id uuid NOT NULL, bankgood_number text NOT NULL, clearing_number text NOT NULL, "
+            + "account_number text NOT NULL, bank_name text NOT NULL) ON COMMIT DROP";
+
+    private static final String COPY_STAGING = "COPY bank_mapping_import "
+            + "(line, id, bankgood_number, clearing_number, account_number, bank_name) FROM STDIN WITH (FORMAT csv)";
+
+    // Keep only the last line per bankgoodNumber
+    private static final String DROP_FILE_DUPLICATES = "DELETE FROM bank_mapping_import s USING bank_mapping_import d "
+            + "WHERE d.bankgood_number = s.bankgood_number AND d.line > s.line";
+
+    private static final String COUNT_NEW = "SELECT count(*) FROM bank_mapping_import s "
+            + "WHERE NOT EXISTS (SELECT 1 FROM bank_mappings m WHERE m.bankgood_number = s.bankgood_number)";
+
+    private static final String UPSERT = "INSERT INTO bank_mappings (id, bankgood_number, clearing_number, account_number, bank_name) "
+            + "SELECT id, bankgood_number, clearing_number, account_number, bank_name FROM bank_mapping_import "
+            + "ORDER BY bankgood_number "
+            + "ON CONFLICT (bankgood_number) DO UPDATE SET clearing_number = EXCLUDED.clearing_number, "
+            + "account_number = EXCLUDED.account_number, bank_name = EXCLUDED.bank_name "
+            + "WHERE (bank_mappings.clearing_number, bank_mappings.account_number, bank_mappings.bank_name) "
+            + "IS DISTINCT FROM (EXCLUDED.clearing_number, EXCLUDED.account_number, EXCLUDED.bank_name)";
+
+    private static final String DELETE_MISSING = "DELETE FROM bank_mappings m WHERE NOT EXISTS "
+            + "(SELECT 1 FROM bank_mapping_import s WHERE s.bankgood_number = m.bankgood_number)";
+
+    private static final String EXPORT = "COPY (SELECT bankgood_number, clearing_number, account_number, bank_name "
+            + "FROM bank_mappings ORDER BY bankgood_number) TO STDOUT WITH (FORMAT csv, HEADER)";
+
+    @Value("${clearing.mapping-import.max-rejects:1000}")
+    private int maxRejects;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final BankMappingService bankMappingService;
+
+    public BankMappingImportService(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                    ObjectMapper objectMapper, BankMappingService bankMappingService) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.bankMappingService = bankMappingService;
+    }
+
+    // ===================== IMPORT =====================
+
+    @Transactional
+    public BankMappingImportResult importMappings(InputStream body, Format format, Mode mode) {
+        long started = System.currentTimeMillis();
+        BankMappingImportResult result = new BankMappingImportResult();
+        result.setMode(mode.name());
+
+        // Serializes imports and single-mapping writes; routing reads are not blocked
+        jdbcTemplate.execute("LOCK TABLE bank_mappings IN SHARE ROW EXCLUSIVE MODE");
+        jdbcTemplate.execute(CREATE_STAGING);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING);
+            try {
+                stage(reader, format, copy, result);
+                copy.endCopy();
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read import body");
+        } catch (SQLException e) {
+            throw new IllegalStateException("COPY into staging table failed", e);
+        }
+
+        if (mode == Mode.REPLACE && result.getRowsRead() - result.getRejected() == 0) {
+            // An empty or fully rejected file would otherwise wipe the directory
+            throw new IllegalArgumentException("REPLACE import contains no valid mappings");
+        }
+
+        jdbcTemplate.execute("CREATE INDEX ON bank_mapping_import (bankgood_number, line)");
+        jdbcTemplate.execute("ANALYZE bank_mapping_import");
+        result.setDuplicates(jdbcTemplate.update(DROP_FILE_DUPLICATES));
+
+        long staged = result.getRowsRead() - result.getRejected() - result.getDuplicates();
+        long inserted = jdbcTemplate.queryForObject(COUNT_NEW, Long.class);
+        long changed = jdbcTemplate.update(UPSERT);
+        long deleted = mode == Mode.REPLACE ? jdbcTemplate.update(DELETE_MISSING) : 0;
+
+        result.setInserted(inserted);
+        result.setUpdated(changed - inserted);
+        result.setUnchanged(staged - changed);
+        result.setDeleted(deleted);
+        result.setVersion(bankMappingService.publishVersion("IMPORT_" + mode.name(), inserted, changed - inserted, deleted));
+        result.setElapsedMs(System.currentTimeMillis() - started);
+
+        log.info("Imported bank directory ({}): {} rows, {} inserted, {} updated, {} deleted, {} rejected in {} ms",
+                mode, result.getRowsRead(), result.getInserted(), result.getUpdated(), deleted,
+                result.getRejected(), result.getElapsedMs());
+        return result;
+    }
+
+    // ===================== EXPORT =====================
+
+    /**
+     * Writes the directory as CSV with COPY TO STDOUT. The version is read in
+     * the same snapshot as the rows and handed to onVersion before any row is
+     * written.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public long exportMappings(OutputStream out, LongConsumer onVersion) {
+        onVersion.accept(bankMappingService.getCurrentVersion());
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(EXPORT, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Bank directory export failed", e);
+        }
+    }
+
+    // ====== Helpers ======
+
+    private void stage(BufferedReader reader, Format format, CopyIn copy, BankMappingImportResult result)
+            throws IOException, SQLException {
+        StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+        long line = 0;
+        String text;
+
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank() || (line == 1 && format == Format.CSV && isHeader(text))) {
+                continue;
+            }
+            result.setRowsRead(result.getRowsRead() + 1);
+
+            BankMapping row;
+            try {
+                row = format == Format.CSV ? parseCsv(text) : objectMapper.readValue(text, BankMapping.class);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                reject(result, line, null, "Malformed row");
+                continue;
+            }
+
+            String reason = validate(row);
+            if (reason != null) {
+                reject(result, line, row.getBankgoodNumber(), reason);
+                continue;
+            }
+
+            buffer.append(line).append(',').append(UUID.randomUUID()).append(',');
+            appendCsv(buffer, row.getBankgoodNumber()).append(',');
+            appendCsv(buffer, row.getClearingNumber()).append(',');
+            appendCsv(buffer, row.getAccountNumber()).append(',');
+            appendCsv(buffer, row.getBankName()).append('\n');
+
+            if (buffer.length() >= COPY_BUFFER_SIZE) {
+                flush(buffer, copy);
+            }
+        }
+        flush(buffer, copy);
+    }
+
+    private String validate(BankMapping row) {
+        if (isBlank(row.getBankgoodNumber())) {
+            return "bankgoodNumber is required";
+        }
+        if (isBlank(row.getClearingNumber())) {
+            return "clearingNumber is required";
+        }
+        if (isBlank(row.getAccountNumber())) {
+            return "accountNumber is required";
+        }
+        if (isBlank(row.getBankName())) {
+            return "bankName is required";
+        }
+        return null;
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private void reject(BankMappingImportResult result, long line, String bankgoodNumber, String reason) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getRejects().size() < maxRejects) {
+            result.getRejects().add(new BankMappingImportReject(line, bankgoodNumber, reason));
+        }
+    }
+
+    private void flush(StringBuilder buffer, CopyIn copy) throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private boolean isHeader(String text) {
+        String first = text.split(",", 2)[0].trim().replace("\"", "");
+        return first.equalsIgnoreCase("bankgoodNumber") || first.equalsIgnoreCase("bankgood_number");
+    }
+
+    private BankMapping parseCsv(String text) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+
+        if (quoted || fields.size() != 4) {
+            throw new IllegalArgumentException("Expected bankgoodNumber,clearingNumber,accountNumber,bankName");
+        }
+        return new BankMapping(null, fields.get(0), fields.get(1), fields.get(2), fields.get(3));
+    }
+
+    private StringBuilder appendCsv(StringBuilder buffer, String value) {
+        return buffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
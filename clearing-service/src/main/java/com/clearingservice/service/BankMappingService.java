@@ -3,8 +3,11 @@ package com.clearingservice.service;
 import java.util.Optional;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.clearingservice.model.BankDirectoryVersion;
 import com.clearingservice.model.BankMapping;
+import com.clearingservice.repository.BankDirectoryVersionRepository;
 import com.clearingservice.repository.BankMappingRepository;
 
 import lombok.extern.slf4j.Slf4j;
@@ -13,38 +16,70 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 public class BankMappingService {
     private final BankMappingRepository repository;
+    private final BankDirectoryVersionRepository versionRepository;
 
-    public BankMappingService(BankMappingRepository repository) {
+    public BankMappingService(BankMappingRepository repository, BankDirectoryVersionRepository versionRepository) {
         this.repository = repository;
+        this.versionRepository = versionRepository;
     }
 
+    @Transactional
     public BankMapping createBankMapping(BankMapping bankMapping) {
         // Optional: check if bankgoodNumber already exists
         if (repository.findByBankgoodNumber(bankMapping.getBankgoodNumber()).isPresent()) {
             throw new IllegalArgumentException("BankMapping with this bankgoodNumber already exists");
         }
-        return repository.save(bankMapping);
+        BankMapping saved = repository.save(bankMapping);
+        publishVersion("CREATE", 1, 0, 0);
+        return saved;
     }
 
+    @Transactional(readOnly = true)
     public Optional<BankMapping> fetchBankMapping(String bankgoodNumber) {
         return repository.findByBankgoodNumber(bankgoodNumber);
     }
 
+    @Transactional
     public Optional<BankMapping> updateBankMapping(String bankgoodNumber, BankMapping updatedMapping) {
         return repository.findByBankgoodNumber(bankgoodNumber)
                 .map(existing -> {
                     existing.setAccountNumber(updatedMapping.getAccountNumber());
                     existing.setClearingNumber(updatedMapping.getClearingNumber());
                     existing.setBankName(updatedMapping.getBankName());
-                    return repository.save(existing);
+                    BankMapping saved = repository.save(existing);
+                    publishVersion("UPDATE", 0, 1, 0);
+                    return saved;
                 });
     }
 
+    @Transactional
     public boolean deleteBankMapping(String bankgoodNumber) {
         return repository.findByBankgoodNumber(bankgoodNumber)
                 .map(mapping -> {
                     repository.delete(mapping);
+                    publishVersion("DELETE", 0, 0, 1);
                     return true;
                 }).orElse(false);
     }
+
+    // ================= DIRECTORY VERSION =================
+
+    /**
+     * Records a directory version. Must run in the transaction that changed
+     * bank_mappings, so the version only becomes visible together with the change.
+     */
+    @Transactional
+    public long publishVersion(String source, long inserted, long updated, long deleted) {
+        BankDirectoryVersion version = versionRepository.save(new BankDirectoryVersion(source, inserted, updated, deleted));
+        log.info("Published bank directory version {} ({}: +{} ~{} -{})",
+                version.getVersion(), source, inserted, updated, deleted);
+        return version.getVersion();
+    }
+
+    @Transactional(readOnly = true)
+    public long getCurrentVersion() {
+        return versionRepository.findTopByOrderByVersionDesc()
+                .map(BankDirectoryVersion::getVersion)
+                .orElse(0L);
+    }
 }
@@ -0,0 +1,263 @@
+package com.clearingservice.service;
+
+import com.clearingservice.event.BankExposureReport;
+import com.clearingservice.event.SettlementReport;
+import com.clearingservice.model.BankExposure;
+import com.clearingservice.model.SettlementObligation;
+import com.clearingservice.repository.BankExposureRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-bank debit caps on what a bank has sent through clearing and not yet
+ * settled (its exposure).
+ *
+ * A forwarded payment adds its amount to the sending bank's exposure, and is
+ * rejected instead if that would exceed the bank's cap. The amount comes off
+ * again when the payment fails or times out, or, once it has completed
+ * successfully, when the settlement cycle containing it is closed (on
+ * completion if settlement is disabled). Exposures are in-memory counters in
+ * minor units updated by compare-and-set, so the check is a map lookup and a
+ * CAS on the routing path.
+ *
+ * The counters are checkpointed to bank_exposures every checkpoint-ms, which
+ * also picks up caps changed in that table. On startup they are rebuilt from
+ * the pending payments and the open settlement window, so like settlement
+ * they assume a single clearing instance.
+ */
+@Slf4j
+@Service
+@DependsOn("entityManagerFactory")
+public class ExposureTracker {
+
+    private static final String LOAD_PENDING = "SELECT from_clearing_number, sum(amount) FROM outgoing_transactions "
+            + "WHERE status = 'PENDING' GROUP BY from_clearing_number";
+
+    private static final String LOAD_CAPS = "SELECT clearing_number, debit_cap FROM bank_exposures";
+
+    private static final String CHECKPOINT = "INSERT INTO bank_exposures (clearing_number, exposure, checkpointed_at) "
+            + "VALUES (?, ?, now()) ON CONFLICT (clearing_number) "
+            + "DO UPDATE SET exposure = excluded.exposure, checkpointed_at = excluded.checkpointed_at";
+
+    private static final String SET_CAP = "INSERT INTO bank_exposures (clearing_number, debit_cap, exposure) "
+            + "VALUES (?, ?, 0) ON CONFLICT (clearing_number) DO UPDATE SET debit_cap = excluded.debit_cap";
+
+    private static final long UNCAPPED = Long.MAX_VALUE;
+
+    @Value("${clearing.exposure.enabled:true}")
+    private boolean enabled;
+
+    private final long defaultCap;
+    private final BankExposureRepository exposureRepository;
+    private final SettlementService settlementService;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Exposure> exposures = new ConcurrentHashMap<>();
+
+    public ExposureTracker(BankExposureRepository exposureRepository, SettlementService settlementService,
+                           JdbcTemplate jdbcTemplate,
+                           @Value("${clearing.exposure.default-debit-cap:}") BigDecimal defaultCap) {
+        this.exposureRepository = exposureRepository;
+        this.settlementService = settlementService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.defaultCap = defaultCap != null ? toMinor(defaultCap) : UNCAPPED;
+    }
+
+    // ===================== STARTUP =====================
+
+    // Runs after SettlementService has rebuilt its open window, and before the Kafka listeners start
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Long> rebuilt = new HashMap<>();
+        jdbcTemplate.query(LOAD_PENDING, rs -> {
+            rebuilt.merge(rs.getString(1), toMinor(rs.getBigDecimal(2)), Long::sum);
+        });
+        for (SettlementObligation obligation : settlementService.getOpenWindow().getObligations()) {
+            rebuilt.merge(obligation.getClearingNumber(), toMinor(obligation.getPaid()), Long::sum);
+        }
+
+        List<BankExposure> checkpoints = exposureRepository.findAll();
+        for (BankExposure checkpoint : checkpoints) {
+            exposure(checkpoint.getClearingNumber()).cap = checkpoint.getDebitCap() != null
+                    ? toMinor(checkpoint.getDebitCap()) : defaultCap;
+            long checkpointed = toMinor(checkpoint.getExposure());
+            long actual = rebuilt.getOrDefault(checkpoint.getClearingNumber(), 0L);
+            if (checkpointed != actual) {
+                log.info("Exposure of bank {} was {} at its last checkpoint ({}), rebuilt as {}",
+                        checkpoint.getClearingNumber(), fromMinor(checkpointed), checkpoint.getCheckpointedAt(),
+                        fromMinor(actual));
+            }
+        }
+        rebuilt.forEach((bank, minor) -> exposure(bank).minor.set(minor));
+        log.info("Rebuilt exposures of {} banks", rebuilt.size());
+    }
+
+    // ===================== ROUTING =====================
+
+    /**
+     * Adds a payment forwarded in the current transaction to the sending
+     * bank's exposure, unless that would exceed its debit cap. The amount is
+     * taken back if the transaction does not commit.
+     *
+     * @return false if the payment must be rejected
+     */
+    public boolean reserve(String clearingNumber, BigDecimal amount) {
+        if (!enabled) {
+            return true;
+        }
+        Exposure exposure = exposure(clearingNumber);
+        long minor = toMinor(amount);
+        long current;
+        do {
+            current = exposure.minor.get();
+            if (minor > exposure.cap - current) {
+                return false;
+            }
+        } while (!exposure.minor.compareAndSet(current, current + minor));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        exposure.minor.addAndGet(-minor);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Takes a forwarded payment that will not be settled, or has been,
+     * off the sending bank's exposure once the current transaction commits.
+     */
+    public void release(String clearingNumber, BigDecimal amount) {
+        if (!enabled) {
+            return;
+        }
+        long minor = toMinor(amount);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    exposure(clearingNumber).minor.addAndGet(-minor);
+                }
+            });
+        } else {
+            exposure(clearingNumber).minor.addAndGet(-minor);
+        }
+    }
+
+    // Published by SettlementService once the cycle is stored
+    @EventListener
+    public void onCycleClosed(SettlementReport cycle) {
+        if (!enabled) {
+            return;
+        }
+        for (SettlementObligation obligation : cycle.getObligations()) {
+            if (obligation.getPaid().signum() != 0) {
+                exposure(obligation.getClearingNumber()).minor.addAndGet(-toMinor(obligation.getPaid()));
+            }
+        }
+    }
+
+    // ===================== CAPS =====================
+
+    /**
+     * Sets a bank's debit cap; null falls back to the default cap. Lowering
+     * it below the current exposure only rejects new payments.
+     */
+    public BankExposureReport setDebitCap(String clearingNumber, BigDecimal debitCap) {
+        if (debitCap != null && debitCap.signum() < 0) {
+            throw new IllegalArgumentException("Debit cap cannot be negative");
+        }
+        jdbcTemplate.update(SET_CAP, clearingNumber, debitCap);
+        Exposure exposure = exposure(clearingNumber);
+        exposure.cap = debitCap != null ? toMinor(debitCap) : defaultCap;
+        log.info("Debit cap of bank {} set to {}", clearingNumber, debitCap != null ? debitCap : "the default");
+        return toReport(clearingNumber, exposure);
+    }
+
+    public List<BankExposureReport> getExposures() {
+        List<BankExposureReport> reports = new ArrayList<>(exposures.size());
+        new TreeMap<>(exposures).forEach((bank, exposure) -> reports.add(toReport(bank, exposure)));
+        return reports;
+    }
+
+    public Optional<BankExposureReport> getExposure(String clearingNumber) {
+        return Optional.ofNullable(exposures.get(clearingNumber)).map(exposure -> toReport(clearingNumber, exposure));
+    }
+
+    // ===================== CHECKPOINT =====================
+
+    @Scheduled(fixedDelayString = "${clearing.exposure.checkpoint-ms:10000}",
+            initialDelayString = "${clearing.exposure.checkpoint-ms:10000}")
+    public void checkpoint() {
+        if (!enabled) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(exposures.size());
+        exposures.forEach((bank, exposure) -> rows.add(new Object[]{bank, fromMinor(exposure.minor.get())}));
+        jdbcTemplate.batchUpdate(CHECKPOINT, rows);
+
+        jdbcTemplate.query(LOAD_CAPS, rs -> {
+            BigDecimal cap = rs.getBigDecimal(2);
+            exposure(rs.getString(1)).cap = cap != null ? toMinor(cap) : defaultCap;
+        });
+    }
+
+    // ====== Helpers ======
+
+    private Exposure exposure(String clearingNumber) {
+        return exposures.computeIfAbsent(clearingNumber, bank -> new Exposure(defaultCap));
+    }
+
+    private static BankExposureReport toReport(String clearingNumber, Exposure exposure) {
+        long minor = exposure.minor.get();
+        long cap = exposure.cap;
+        return cap == UNCAPPED
+                ? new BankExposureReport(clearingNumber, fromMinor(minor), null, null)
+                : new BankExposureReport(clearingNumber, fromMinor(minor), fromMinor(cap), fromMinor(cap - minor));
+    }
+
+    // Amounts are stored with two decimals, rounded like the numeric column rounds them
+    private static long toMinor(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, 2);
+    }
+
+    private static final class Exposure {
+        private final AtomicLong minor = new AtomicLong();
+        private volatile long cap;
+
+        Exposure(long cap) {
+            this.cap = cap;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.clearingservice.service;
+
+import com.clearingservice.event.TransactionResponseEvent;
+import com.clearingservice.model.TransactionStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fails forwarded transactions that the destination bank has not answered
+ * within timeout-ms, and tells the origin bank through the outbox so it can
+ * release the reserved funds. The payment also comes off the origin bank's
+ * exposure (see ExposureTracker).
+ *
+ * Deadlines live in a timing wheel: forwarded transactions are added after
+ * commit and the wheel is rebuilt from PENDING rows on startup, so a tick
+ * touches only the transactions that are actually due. At most max-tracked
+ * deadlines are held in memory; anything beyond that (or forwarded by an
+ * instance that has since stopped) is picked up by the periodic rescan.
+ *
+ * Expiry is a conditional UPDATE on status = 'PENDING', so a response that
+ * arrived first, or another instance firing the same deadline, wins and no
+ * second completion is emitted. The timeout must stay shorter than the
+ * banks' own reservation expiry.
+ */
+@Slf4j
+@Component
+public class ForwardTimeoutTracker {
+
+    private static final String CREATE_PENDING_INDEX = "CREATE INDEX IF NOT EXISTS idx_outgoing_forward_pending "
+            + "ON outgoing_transactions (created_at, transaction_id) WHERE status = 'PENDING'";
+
+    // Earlier name of the same index
+    private static final String DROP_OLD_INDEX = "DROP INDEX IF EXISTS idx_outgoing_pending_created";
+
+    private static final String LOAD_PENDING = "SELECT transaction_id, created_at FROM outgoing_transactions "
+            + "WHERE status = 'PENDING' AND (created_at, transaction_id) > (?, ?) "
+            + "ORDER BY created_at, transaction_id LIMIT ?";
+
+    private static final String FIND_EXPIRED = "SELECT transaction_id FROM outgoing_transactions "
+            + "WHERE status = 'PENDING' AND created_at <= ? ORDER BY created_at LIMIT ?";
+
+    private static final String EXPIRE = "UPDATE outgoing_transactions SET status = 'FAILED', updated_at = now() "
+            + "WHERE transaction_id = ANY (?::uuid[]) AND status = 'PENDING' AND created_at <= ? "
+            + "RETURNING transaction_id, from_clearing_number, amount";
+
+    private static final String INSERT_OUTBOX = "INSERT INTO outbox_events "
+            + "(id, transaction_id, topic, message_key, payload, published, created_at) "
+            + "VALUES (nextval('outbox_events_seq'), ?, ?, ?, ?, false, now())";
+
+    private static final int LOAD_PAGE_SIZE = 10_000;
+
+    @Value("${clearing.forward-timeout.enabled:true}")
+    private boolean enabled;
+
+    @Value("${clearing.forward-timeout.timeout-ms:600000}")
+    private long timeoutMs;
+
+    @Value("${clearing.forward-timeout.batch-size:500}")
+    private int batchSize;
+
+    @Value("${clearing.forward-timeout.max-tracked:1000000}")
+    private int maxTracked;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExposureTracker exposureTracker;
+    private final HierarchicalTimingWheel<UUID> wheel;
+
+    public ForwardTimeoutTracker(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper, ExposureTracker exposureTracker,
+                                 @Value("${clearing.forward-timeout.tick-ms:1000}") long tickMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.exposureTracker = exposureTracker;
+        this.wheel = new HierarchicalTimingWheel<>(tickMs, 4, System.currentTimeMillis());
+    }
+
+    /**
+     * Starts the timeout for a transaction forwarded in the current
+     * transaction. The deadline is only registered once that commits.
+     */
+    public void track(UUID transactionId) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(transactionId, System.currentTimeMillis() + timeoutMs);
+                }
+            });
+        } else {
+            add(transactionId, System.currentTimeMillis() + timeoutMs);
+        }
+    }
+
+    // ===================== STARTUP =====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        // Keyset order for the startup load and the rescan, over forwarded rows still awaiting a response
+        jdbcTemplate.execute(CREATE_PENDING_INDEX);
+        jdbcTemplate.execute(DROP_OLD_INDEX);
+        if (!enabled) {
+            return;
+        }
+
+        Timestamp afterTime = Timestamp.valueOf(LocalDateTime.of(1970, 1, 1, 0, 0));
+        UUID afterId = new UUID(0, 0);
+        int loaded = 0;
+        while (wheel.size() < maxTracked) {
+            int room = Math.min(LOAD_PAGE_SIZE, maxTracked - wheel.size());
+            List<Object[]> page = jdbcTemplate.query(LOAD_PENDING,
+                    (rs, i) -> new Object[]{rs.getObject(1, UUID.class), rs.getTimestamp(2)},
+                    afterTime, afterId, room);
+            for (Object[] row : page) {
+                afterId = (UUID) row[0];
+                afterTime = (Timestamp) row[1];
+                add(afterId, afterTime.getTime() + timeoutMs);
+            }
+            loaded += page.size();
+            if (page.size() < room) {
+                break;
+            }
+        }
+        log.info("Rebuilt forward timeouts from {} pending transactions ({} tracked)", loaded, wheel.size());
+    }
+
+    // ===================== EXPIRY =====================
+
+    @Scheduled(fixedDelayString = "${clearing.forward-timeout.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        List<UUID> due = wheel.advance(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Timestamp cutoff = cutoff();
+        int failed = 0;
+        for (int from = 0; from < due.size(); from += batchSize) {
+            failed += expire(due.subList(from, Math.min(from + batchSize, due.size())), cutoff);
+        }
+        if (failed > 0) {
+            log.warn("Failed {} forwarded transactions with no response within {} ms", failed, timeoutMs);
+        }
+    }
+
+    /**
+     * Catches pending transactions that are not in this instance's wheel.
+     */
+    @Scheduled(fixedDelayString = "${clearing.forward-timeout.rescan-ms:300000}",
+            initialDelayString = "${clearing.forward-timeout.rescan-ms:300000}")
+    public void rescan() {
+        if (!enabled) {
+            return;
+        }
+        Timestamp cutoff = cutoff();
+        int total = 0;
+        List<UUID> expired;
+        do {
+            expired = jdbcTemplate.queryForList(FIND_EXPIRED, UUID.class, cutoff, batchSize);
+            if (!expired.isEmpty()) {
+                total += expire(expired, cutoff);
+            }
+        } while (expired.size() == batchSize);
+
+        if (total > 0) {
+            log.warn("Rescan failed {} untracked forwarded transactions pending since before {}", total, cutoff);
+        }
+    }
+
+    // ====== Helpers ======
+
+    private int expire(List<UUID> transactionIds, Timestamp cutoff) {
+        String[] ids = transactionIds.stream().map(UUID::toString).toArray(String[]::new);
+        return transactionTemplate.execute(status -> {
+            List<Object[]> outbox = new ArrayList<>();
+            jdbcTemplate.query(EXPIRE, rs -> {
+                UUID id = rs.getObject(1, UUID.class);
+                outbox.add(new Object[]{id, TransactionService.TOPIC_COMPLETED, rs.getString(2), failedResponse(id)});
+                exposureTracker.release(rs.getString(2), rs.getBigDecimal(3));
+            }, ids, cutoff);
+            if (!outbox.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_OUTBOX, outbox);
+            }
+            return outbox.size();
+        });
+    }
+
+    private String failedResponse(UUID transactionId) {
+        TransactionResponseEvent response = new TransactionResponseEvent(transactionId, TransactionStatus.FAILED,
+                "No response from destination bank within " + timeoutMs + " ms");
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize timeout response for " + transactionId, e);
+        }
+    }
+
+    private void add(UUID transactionId, long deadlineMs) {
+        if (wheel.size() >= maxTracked) {
+            // Left to the rescan
+            return;
+        }
+        wheel.add(transactionId, deadlineMs);
+    }
+
+    private Timestamp cutoff() {
+        return Timestamp.valueOf(LocalDateTime.now().minusNanos(timeoutMs * 1_000_000));
+    }
+}
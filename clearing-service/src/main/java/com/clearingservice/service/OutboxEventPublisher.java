@@ -1,7 +1,11 @@
 package com.clearingservice.service;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -18,21 +22,50 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 @Slf4j
 public class OutboxEventPublisher {
 
+    // Events read, sent and marked published per round; a crash re-sends at most one page
+    static final int PAGE_SIZE = 1000;
+
+    private static final String ALIGN_ID_SEQUENCE = "SELECT setval('outbox_events_seq', max_id + 50) "
+            + "FROM (SELECT max(id) AS max_id FROM outbox_events) t "
+            + "WHERE max_id >= (SELECT last_value FROM outbox_events_seq)";
+
     private final OutboxEventRepository outboxEventRepo;
     private final KafkaTemplate<String, Object> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
 
     public OutboxEventPublisher(OutboxEventRepository outboxEventRepo,
                                 KafkaTemplate<String, Object> kafkaTemplate,
-                                ObjectMapper objectMapper) {
+                                ObjectMapper objectMapper,
+                                JdbcTemplate jdbcTemplate) {
         this.outboxEventRepo = outboxEventRepo;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Moves outbox_events_seq past ids handed out while the table used an
+     * IDENTITY column. Runs before the Kafka listeners start writing events.
+     */
+    @PostConstruct
+    public void alignIdSequence() {
+        jdbcTemplate.queryForList(ALIGN_ID_SEQUENCE, Long.class);
     }
 
     @Scheduled(fixedRate = 1000)
     public void publishPendingEvents() {
-        List<OutboxEvent> pendingEvents = outboxEventRepo.findByPublishedFalseOrderByCreatedAtAsc();
+        List<OutboxEvent> page;
+        int published;
+        do {
+            page = outboxEventRepo.findTop1000ByPublishedFalseOrderByCreatedAtAsc();
+            published = publishPage(page);
+            // A page with failed or skipped events is retried on the next run instead of re-read now
+        } while (page.size() == PAGE_SIZE && published == page.size());
+    }
+
+    private int publishPage(List<OutboxEvent> pendingEvents) {
+        List<Long> published = new ArrayList<>();
 
         for (OutboxEvent event : pendingEvents) {
             try {
@@ -55,8 +88,7 @@ public class OutboxEventPublisher {
                 kafkaTemplate.send(event.getTopic(), event.getMessageKey(), payloadObj).get();
                 log.info(payloadObj.toString());
                 // Mark as published only after successful send
-                event.setPublished(true);
-                outboxEventRepo.save(event);
+                published.add(event.getId());
 
                 log.info("Published outbox event with transaction ID: {} to clearing number: {}", event.getTransactionId(), event.getMessageKey());
 
@@ -64,5 +96,11 @@ public class OutboxEventPublisher {
                 log.error("Failed to publish outbox event id={}", event.getId(), e);
             }
         }
+
+        // One UPDATE for the page's sent events instead of one per event
+        if (!published.isEmpty()) {
+            outboxEventRepo.markPublished(published);
+        }
+        return published.size();
     }
 }
@@ -0,0 +1,294 @@
+package com.clearingservice.service;
+
+import com.clearingservice.event.FileIngestionReject;
+import com.clearingservice.event.FileIngestionReport;
+import com.clearingservice.event.OutgoingTransactionEvent;
+import com.clearingservice.model.TransactionStatus;
+import com.clearingservice.model.UuidV7;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Ingests ISO 20022 pain.001 (CustomerCreditTransferInitiation) files.
+ *
+ * The file is read with a StAX cursor, so memory use does not depend on the
+ * file size: only the current payment and the current chunk of routed
+ * transactions are held. Every chunk is routed in one database transaction
+ * through TransactionService.handleOutgoingBatch, which resolves all
+ * destinations of the chunk with a single bank-mapping query.
+ *
+ * Mapping to OutgoingTransactionEvent:
+ * PmtInf/DbtrAgt/FinInstnId/ClrSysMmbId/MmbId  -> fromClearingNumber
+ * PmtInf/DbtrAcct/Id/Othr/Id (or IBAN)          -> fromAccountNumber
+ * CdtTrfTxInf/CdtrAcct/Id/Othr/Id (or IBAN)     -> toBankgoodNumber
+ * CdtTrfTxInf/Amt/InstdAmt                      -> amount
+ *
+ * Transaction ids are derived from MsgId, PmtInfId and EndToEndId, so
+ * re-sending the same file is reported as duplicates instead of paying twice.
+ * They are time-ordered UUIDv7s stamped with GrpHdr/CreDtTm, so the
+ * transactions of one file are inserted next to each other in the index.
+ */
+@Slf4j
+@Service
+public class Pain001IngestionService {
+
+    private static final int MAX_REPORTS = 100;
+
+    @Value("${clearing.file-ingestion.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${clearing.file-ingestion.max-rejects:1000}")
+    private int maxRejects;
+
+    private final TransactionService transactionService;
+    private final XMLInputFactory inputFactory;
+
+    // Most recent reports only, oldest evicted first
+    private final Map<UUID, FileIngestionReport> reports = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, FileIngestionReport> eldest) {
+            return size() > MAX_REPORTS;
+        }
+    };
+
+    public Pain001IngestionService(TransactionService transactionService) {
+        this.transactionService = transactionService;
+        this.inputFactory = XMLInputFactory.newFactory();
+        // Never resolve DTDs or external entities from uploaded files
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public Optional<FileIngestionReport> getReport(UUID fileId) {
+        synchronized (reports) {
+            return Optional.ofNullable(reports.get(fileId));
+        }
+    }
+
+    /**
+     * Parses and routes the whole file. The report is registered under fileId
+     * before parsing starts, so progress can be polled while this runs.
+     */
+    public FileIngestionReport ingest(UUID fileId, InputStream body) {
+        FileIngestionReport report = new FileIngestionReport();
+        report.setFileId(fileId);
+        report.setStatus("RUNNING");
+        report.setStartedAt(LocalDateTime.now());
+        synchronized (reports) {
+            reports.put(fileId, report);
+        }
+
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(body);
+            parse(reader, report);
+            report.setStatus("COMPLETED");
+        } catch (XMLStreamException e) {
+            report.setStatus("FAILED");
+            report.setError("Malformed pain.001 file: " + e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Ingestion of file {} failed", fileId, e);
+            report.setStatus("FAILED");
+            report.setError(e.getMessage());
+        } finally {
+            report.setFinishedAt(LocalDateTime.now());
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+
+        log.info("File {} ({}) {}: {} read, {} forwarded, {} rejected, {} duplicates",
+                fileId, report.getMessageId(), report.getStatus(), report.getTransactionsRead(),
+                report.getForwarded(), report.getRejected(), report.getDuplicates());
+        return report;
+    }
+
+    // ===================== PARSING =====================
+
+    private void parse(XMLStreamReader reader, FileIngestionReport report) throws XMLStreamException {
+        Deque<Integer> pathLengths = new ArrayDeque<>();
+        StringBuilder path = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+
+        String msgId = null;
+        long creationTime = 0;
+        String pmtInfId = null;
+        String fromClearingNumber = null;
+        String fromAccountNumber = null;
+        String endToEndId = null;
+        String amount = null;
+        String toBankgoodNumber = null;
+
+        List<OutgoingTransactionEvent> chunk = new ArrayList<>(chunkSize);
+        Map<UUID, String> references = new LinkedHashMap<>();
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    pathLengths.push(path.length());
+                    path.append('/').append(reader.getLocalName());
+                    text.setLength(0);
+
+                    String current = path.toString();
+                    if (current.endsWith("/PmtInf")) {
+                        pmtInfId = null;
+                        fromClearingNumber = null;
+                        fromAccountNumber = null;
+                    } else if (current.endsWith("/CdtTrfTxInf")) {
+                        endToEndId = null;
+                        amount = null;
+                        toBankgoodNumber = null;
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> text.append(reader.getText());
+                case XMLStreamConstants.END_ELEMENT -> {
+                    String current = path.toString();
+                    String value = text.toString().trim();
+
+                    if (current.endsWith("/GrpHdr/MsgId")) {
+                        msgId = value;
+                        report.setMessageId(msgId);
+                    } else if (current.endsWith("/GrpHdr/CreDtTm")) {
+                        creationTime = parseCreationTime(value);
+                    } else if (current.endsWith("/PmtInf/PmtInfId")) {
+                        pmtInfId = value;
+                    } else if (current.endsWith("/DbtrAgt/FinInstnId/ClrSysMmbId/MmbId")) {
+                        fromClearingNumber = value;
+                    } else if (current.endsWith("/DbtrAcct/Id/Othr/Id") || current.endsWith("/DbtrAcct/Id/IBAN")) {
+                        fromAccountNumber = value;
+                    } else if (current.endsWith("/CdtTrfTxInf/PmtId/EndToEndId")) {
+                        endToEndId = value;
+                    } else if (current.endsWith("/CdtTrfTxInf/Amt/InstdAmt")) {
+                        amount = value;
+                    } else if (current.endsWith("/CdtrAcct/Id/Othr/Id") || current.endsWith("/CdtrAcct/Id/IBAN")) {
+                        toBankgoodNumber = value;
+                    } else if (current.endsWith("/PmtInf/CdtTrfTxInf")) {
+                        long ordinal = report.getTransactionsRead() + 1;
+                        report.setTransactionsRead(ordinal);
+                        String reference = endToEndId != null && !endToEndId.isEmpty() ? endToEndId : "#" + ordinal;
+
+                        String reason = validate(fromClearingNumber, fromAccountNumber, toBankgoodNumber, amount);
+                        if (reason != null) {
+                            reject(report, reference, reason);
+                        } else {
+                            OutgoingTransactionEvent event = toEvent(msgId, creationTime, pmtInfId, reference,
+                                    fromClearingNumber, fromAccountNumber, toBankgoodNumber, new BigDecimal(amount));
+                            chunk.add(event);
+                            references.put(event.getTransactionId(), reference);
+                            if (chunk.size() >= chunkSize) {
+                                route(chunk, references, report);
+                            }
+                        }
+                    }
+
+                    path.setLength(pathLengths.pop());
+                    text.setLength(0);
+                }
+                default -> {
+                }
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            route(chunk, references, report);
+        }
+    }
+
+    private String validate(String fromClearingNumber, String fromAccountNumber, String toBankgoodNumber, String amount) {
+        if (fromClearingNumber == null || fromClearingNumber.isEmpty()) {
+            return "Debtor agent clearing number (DbtrAgt/FinInstnId/ClrSysMmbId/MmbId) is required";
+        }
+        if (fromAccountNumber == null || fromAccountNumber.isEmpty()) {
+            return "Debtor account is required";
+        }
+        if (toBankgoodNumber == null || toBankgoodNumber.isEmpty()) {
+            return "Creditor account is required";
+        }
+        try {
+            if (amount == null || new BigDecimal(amount).compareTo(BigDecimal.ZERO) <= 0) {
+                return "Amount must be above 0";
+            }
+        } catch (NumberFormatException e) {
+            return "Invalid amount '" + amount + "'";
+        }
+        return null;
+    }
+
+    private OutgoingTransactionEvent toEvent(String msgId, long creationTime, String pmtInfId, String reference,
+            String fromClearingNumber, String fromAccountNumber, String toBankgoodNumber, BigDecimal amount) {
+        String key = msgId + "/" + pmtInfId + "/" + reference;
+        LocalDateTime now = LocalDateTime.now();
+
+        OutgoingTransactionEvent event = new OutgoingTransactionEvent();
+        event.setTransactionId(UuidV7.fromName(creationTime, key.getBytes(StandardCharsets.UTF_8)));
+        event.setFromClearingNumber(fromClearingNumber);
+        event.setFromAccountNumber(fromAccountNumber);
+        event.setToBankgoodNumber(toBankgoodNumber);
+        event.setAmount(amount);
+        event.setStatus(TransactionStatus.PENDING);
+        event.setCreatedAt(now);
+        event.setUpdatedAt(now);
+        return event;
+    }
+
+    // Stable across resends of the same file; a missing or unreadable CreDtTm stamps the epoch
+    private long parseCreationTime(String value) {
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    private void route(List<OutgoingTransactionEvent> chunk, Map<UUID, String> references, FileIngestionReport report) {
+        Map<UUID, String> notForwarded = transactionService.handleOutgoingBatch(chunk);
+
+        report.setForwarded(report.getForwarded() + chunk.size() - notForwarded.size());
+        notForwarded.forEach((transactionId, reason) -> {
+            if (TransactionService.DUPLICATE.equals(reason)) {
+                report.setDuplicates(report.getDuplicates() + 1);
+            } else {
+                reject(report, references.get(transactionId), reason);
+            }
+        });
+
+        chunk.clear();
+        references.clear();
+    }
+
+    private void reject(FileIngestionReport report, String reference, String reason) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getRejects().size() < maxRejects) {
+            report.getRejects().add(new FileIngestionReject(reference, reason));
+        }
+    }
+}
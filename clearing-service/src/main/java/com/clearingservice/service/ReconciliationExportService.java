@@ -0,0 +1,66 @@
+package com.clearingservice.service;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Streams one bank's side of outgoing_transactions for reconciliation.
+ *
+ * Rows come out as CSV (transaction_id, amount, status) in transaction_id
+ * order, straight from COPY TO STDOUT, so a bank can merge-join them against
+ * its own rows without holding either side in memory. The order follows the
+ * primary key, which Postgres reads partition by partition and merges.
+ */
+@Service
+public class ReconciliationExportService {
+
+    public enum Direction {
+        OUTGOING, // sent by the bank
+        INCOMING  // routed to the bank
+    }
+
+    // COPY takes no bind parameters, so the only free-text value is checked instead
+    private static final Pattern CLEARING_NUMBER = Pattern.compile("[0-9A-Za-z-]{1,32}");
+
+    private static final String EXPORT = "COPY (SELECT transaction_id, amount, status FROM outgoing_transactions "
+            + "WHERE %s = '%s' AND transaction_id >= '%s' AND transaction_id < '%s' "
+            + "ORDER BY transaction_id) TO STDOUT WITH (FORMAT csv)";
+
+    private final DataSource dataSource;
+
+    public ReconciliationExportService(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Writes the transactions of the bank in the given direction whose id is
+     * in [from, to).
+     */
+    @Transactional(readOnly = true)
+    public long export(OutputStream out, String clearingNumber, Direction direction, UUID from, UUID to) {
+        if (!CLEARING_NUMBER.matcher(clearingNumber).matches()) {
+            throw new IllegalArgumentException("Invalid clearing number");
+        }
+        String column = direction == Direction.OUTGOING ? "from_clearing_number" : "to_clearing_number";
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyOut(EXPORT.formatted(column, clearingNumber, from, to), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Reconciliation export failed", e);
+        }
+    }
+}
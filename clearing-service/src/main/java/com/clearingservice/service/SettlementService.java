@@ -0,0 +1,331 @@
+package com.clearingservice.service;
+
+import com.clearingservice.event.SettlementReport;
+import com.clearingservice.model.SettlementCycle;
+import com.clearingservice.model.SettlementObligation;
+import com.clearingservice.model.SettlementPosition;
+import com.clearingservice.repository.SettlementCycleRepository;
+import com.clearingservice.repository.SettlementObligationRepository;
+import com.clearingservice.repository.SettlementPositionRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deferred multilateral net settlement.
+ *
+ * Every payment that completes successfully adds its amount to the open
+ * window's position for its (payer bank, payee bank) pair, once the
+ * completion commits. Positions are striped counters (LongAdder) in minor
+ * units, so concurrent completions do not contend on a shared value. The
+ * completing transaction joins the window first and stores its start in the
+ * payment's settlement_window, and a cut-off waits for the transactions that
+ * joined the window it closes.
+ *
+ * At each cut-off the open window is swapped for a new one and closed: each
+ * bank's net obligation (received minus paid) is computed from the pair
+ * positions, and the cycle, its positions and obligations are stored in one
+ * transaction. If that fails, the window's payments are carried into the
+ * next window. On startup the open window is rebuilt from the payments whose
+ * settlement_window starts at or after the last cut-off, so positions assume
+ * a single clearing instance. Each stored cycle is published as a SettlementReport event.
+ */
+@Slf4j
+@Service
+@DependsOn("entityManagerFactory")
+public class SettlementService {
+
+    // created_at bounds the scan so old partitions are skipped; payments complete well within a day
+    private static final String LOAD_OPEN_WINDOW = "SELECT from_clearing_number, to_clearing_number, "
+            + "sum(amount), count(*) FROM outgoing_transactions "
+            + "WHERE settlement_window >= ? AND created_at >= ? "
+            + "GROUP BY from_clearing_number, to_clearing_number";
+
+    // Before the first cut-off every netted payment belongs to the open window
+    private static final LocalDateTime BEFORE_FIRST_CYCLE = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Value("${clearing.settlement.enabled:true}")
+    private boolean enabled;
+
+    private final SettlementCycleRepository cycleRepository;
+    private final SettlementPositionRepository positionRepository;
+    private final SettlementObligationRepository obligationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher events;
+    private final AtomicReference<Window> window = new AtomicReference<>(new Window(now()));
+
+    public SettlementService(SettlementCycleRepository cycleRepository,
+                             SettlementPositionRepository positionRepository,
+                             SettlementObligationRepository obligationRepository, JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager, ApplicationEventPublisher events) {
+        this.cycleRepository = cycleRepository;
+        this.positionRepository = positionRepository;
+        this.obligationRepository = obligationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.events = events;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ===================== STARTUP =====================
+
+    // Runs before the Kafka listeners start, so no completion is counted twice
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime start = cycleRepository.findTopByOrderByCutoffDesc()
+                .map(SettlementCycle::getCutoff)
+                .orElse(BEFORE_FIRST_CYCLE);
+        Window open = new Window(start);
+        jdbcTemplate.query(LOAD_OPEN_WINDOW,
+                rs -> {
+                    open.add(rs.getString(1), rs.getString(2), toMinor(rs.getBigDecimal(3)), rs.getLong(4));
+                },
+                Timestamp.valueOf(start), Timestamp.valueOf(start.minusDays(1)));
+        window.set(open);
+        log.info("Rebuilt settlement window since {} with {} bank pairs", start, open.positions.size());
+    }
+
+    // ===================== POSITIONS =====================
+
+    /**
+     * Joins the current transaction to the open window until it completes; a
+     * cut-off of that window waits for it. Returns the window's start, to be
+     * stored as the settlement_window of the payment completed in it.
+     */
+    public LocalDateTime join() {
+        Window joined = (Window) TransactionSynchronizationManager.getResource(this);
+        if (joined != null) {
+            return joined.start;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Settlement windows are joined by a transaction");
+        }
+        while (true) {
+            Window current = window.get();
+            current.writers.increment();
+            // A cut-off swapped the window in between; it no longer takes payments
+            if (window.get() == current) {
+                joined = current;
+                break;
+            }
+            current.writers.decrement();
+        }
+        Window open = joined;
+        TransactionSynchronizationManager.bindResource(this, open);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(SettlementService.this);
+                open.writers.decrement();
+            }
+        });
+        return open.start;
+    }
+
+    /**
+     * Adds a payment completed successfully in the current transaction to the
+     * window it joined. The position only changes once that commits.
+     */
+    public void record(String payerClearingNumber, String payeeClearingNumber, BigDecimal amount) {
+        if (!enabled || payeeClearingNumber == null) {
+            return;
+        }
+        Window joined = (Window) TransactionSynchronizationManager.getResource(this);
+        if (joined == null) {
+            throw new IllegalStateException("Payments are recorded in the window their transaction joined");
+        }
+        long minor = toMinor(amount);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                joined.add(payerClearingNumber, payeeClearingNumber, minor, 1);
+            }
+        });
+    }
+
+    public SettlementReport getOpenWindow() {
+        Window open = window.get();
+        Cycle cycle = summarize(open);
+        return new SettlementReport(null, open.start, null, cycle.payments(), fromMinor(cycle.grossMinor()),
+                fromMinor(cycle.netMinor()), cycle.obligations(), cycle.positions());
+    }
+
+    // ===================== CUT-OFF =====================
+
+    @Scheduled(cron = "${clearing.settlement.cron:0 0 * * * *}")
+    public void scheduledCutOff() {
+        if (enabled) {
+            cutOff();
+        }
+    }
+
+    /**
+     * Closes the open window and stores it as a settlement cycle.
+     */
+    public synchronized SettlementReport cutOff() {
+        Window closed = window.get();
+        Window next = new Window(now());
+        window.set(next);
+        closed.awaitWriters();
+
+        SettlementReport cycle;
+        try {
+            cycle = transactionTemplate.execute(status -> persist(closed, next.start));
+        } catch (RuntimeException e) {
+            closed.positions.forEach((pair, position) -> next.add(pair.payer(), pair.payee(),
+                    position.minor.sum(), position.payments.sum()));
+            log.error("Failed to store the settlement cycle closing at {}; its payments move to the next window",
+                    next.start, e);
+            throw e;
+        }
+        events.publishEvent(cycle);
+        return cycle;
+    }
+
+    public Optional<SettlementReport> getCycle(Long cycleId) {
+        return cycleRepository.findById(cycleId).map(this::toReport);
+    }
+
+    public Optional<SettlementReport> getLatestCycle() {
+        return cycleRepository.findTopByOrderByCutoffDesc().map(this::toReport);
+    }
+
+    // ====== Helpers ======
+
+    private SettlementReport persist(Window closed, LocalDateTime cutoff) {
+        Cycle cycle = summarize(closed);
+        SettlementCycle saved = cycleRepository.save(new SettlementCycle(closed.start, cutoff, cycle.payments(),
+                fromMinor(cycle.grossMinor()), fromMinor(cycle.netMinor())));
+        cycle.positions().forEach(position -> position.setCycleId(saved.getId()));
+        cycle.obligations().forEach(obligation -> obligation.setCycleId(saved.getId()));
+        positionRepository.saveAll(cycle.positions());
+        obligationRepository.saveAll(cycle.obligations());
+
+        log.info("Closed settlement cycle {} ({} to {}): {} payments, gross {}, net {} between {} banks",
+                saved.getId(), closed.start, cutoff, cycle.payments(), saved.getGrossAmount(),
+                saved.getNetAmount(), cycle.obligations().size());
+        return new SettlementReport(saved.getId(), saved.getWindowStart(), saved.getCutoff(), saved.getPayments(),
+                saved.getGrossAmount(), saved.getNetAmount(), cycle.obligations(), cycle.positions());
+    }
+
+    private Cycle summarize(Window window) {
+        List<SettlementPosition> positions = new ArrayList<>();
+        Map<String, long[]> banks = new TreeMap<>(); // clearing number -> {paid, received}
+        long payments = 0;
+        long grossMinor = 0;
+
+        for (Map.Entry<Pair, Position> entry : new TreeMap<>(window.positions).entrySet()) {
+            Pair pair = entry.getKey();
+            long minor = entry.getValue().minor.sum();
+            long count = entry.getValue().payments.sum();
+            positions.add(new SettlementPosition(null, pair.payer(), pair.payee(), fromMinor(minor), count));
+            banks.computeIfAbsent(pair.payer(), bank -> new long[2])[0] += minor;
+            banks.computeIfAbsent(pair.payee(), bank -> new long[2])[1] += minor;
+            payments += count;
+            grossMinor += minor;
+        }
+
+        List<SettlementObligation> obligations = new ArrayList<>(banks.size());
+        long netMinor = 0;
+        for (Map.Entry<String, long[]> bank : banks.entrySet()) {
+            long[] totals = bank.getValue();
+            obligations.add(new SettlementObligation(null, bank.getKey(), fromMinor(totals[0]), fromMinor(totals[1])));
+            netMinor += Math.max(totals[0] - totals[1], 0);
+        }
+        return new Cycle(positions, obligations, payments, grossMinor, netMinor);
+    }
+
+    private SettlementReport toReport(SettlementCycle cycle) {
+        return new SettlementReport(cycle.getId(), cycle.getWindowStart(), cycle.getCutoff(), cycle.getPayments(),
+                cycle.getGrossAmount(), cycle.getNetAmount(),
+                obligationRepository.findByCycleIdOrderByClearingNumber(cycle.getId()),
+                positionRepository.findByCycleIdOrderByPayerClearingNumberAscPayeeClearingNumberAsc(cycle.getId()));
+    }
+
+    // Truncated to what a timestamp column stores, so windows compare exactly against settlement_window
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    // Amounts are stored with two decimals
+    private static long toMinor(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    private static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, 2);
+    }
+
+    private record Pair(String payer, String payee) implements Comparable<Pair> {
+
+        @Override
+        public int compareTo(Pair other) {
+            int byPayer = payer.compareTo(other.payer);
+            return byPayer != 0 ? byPayer : payee.compareTo(other.payee);
+        }
+    }
+
+    private static final class Position {
+        private final LongAdder minor = new LongAdder();
+        private final LongAdder payments = new LongAdder();
+    }
+
+    private record Cycle(List<SettlementPosition> positions, List<SettlementObligation> obligations, long payments,
+                         long grossMinor, long netMinor) {
+    }
+
+    private static final class Window {
+
+        private final LocalDateTime start;
+        private final Map<Pair, Position> positions = new ConcurrentHashMap<>();
+        // Open transactions that joined the window; a cut-off waits for them before closing it
+        private final LongAdder writers = new LongAdder();
+
+        Window(LocalDateTime start) {
+            this.start = start;
+        }
+
+        void add(String payer, String payee, long minor, long payments) {
+            Position position = positions.computeIfAbsent(new Pair(payer, payee), pair -> new Position());
+            position.minor.add(minor);
+            position.payments.add(payments);
+        }
+
+        void awaitWriters() {
+            while (writers.sum() != 0) {
+                LockSupport.parkNanos(100_000);
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.clearingservice.service;
+
+import com.clearingservice.event.PartitionInfo;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps outgoing_transactions range-partitioned by created_at month.
+ *
+ * Hibernate creates it as a plain table. Conversion is opt-in
+ * (partitioning.enabled), as it holds an exclusive lock on the table while
+ * the old rows are attached. Before the application starts writing, the
+ * table is then converted in place: it is renamed to
+ * {table}_legacy and attached, unchanged, as the partition for everything up
+ * to the start of next month. Its secondary indexes are recreated on the
+ * parent, where Postgres adopts the existing ones instead of rebuilding them.
+ * From then on one partition per month is created months-ahead in advance.
+ * Every partition carries a BRIN index on created_at, which stays tiny
+ * because rows arrive in created_at order.
+ *
+ * A partitioned table can only enforce keys that include created_at, so the
+ * primary key becomes (transaction_id, created_at). To keep a redelivered
+ * transaction from being inserted twice, a trigger mirrors every
+ * transaction_id into {table}_ids, whose primary key is the id alone; a
+ * duplicate insert fails on it as it failed on the old primary key.
+ *
+ * Old partitions can be detached; they remain as standalone tables to be
+ * archived or dropped.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class TransactionPartitionManager {
+
+    private static final List<String> TABLES = List.of("outgoing_transactions");
+
+    // Hibernate does not see indexes on a partitioned parent, so they are not declared on the entity
+    private static final Map<String, List<String>> INDEXES = Map.of(
+            "outgoing_transactions", List.of(
+                    "CREATE INDEX IF NOT EXISTS brin_outgoing_created ON outgoing_transactions USING brin (created_at)"));
+
+    // Keeps {table}_ids in step with the ids in the table
+    private static final String ID_GUARD_FUNCTION = "CREATE OR REPLACE FUNCTION %1$s_guard_id() RETURNS trigger "
+            + "LANGUAGE plpgsql AS $$ BEGIN "
+            + "IF TG_OP = 'INSERT' THEN INSERT INTO %1$s_ids (transaction_id) VALUES (NEW.transaction_id); RETURN NEW; "
+            + "END IF; DELETE FROM %1$s_ids WHERE transaction_id = OLD.transaction_id; RETURN OLD; END $$";
+
+    private static final String LIST_PARTITIONS = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid), "
+            + "greatest(c.reltuples, 0)::bigint FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+            + "WHERE i.inhparent = ?::regclass ORDER BY c.relname";
+
+    private static final Pattern RANGE_BOUND = Pattern.compile(
+            "FROM \\((?:'([^']+)'|MINVALUE)\\) TO \\((?:'([^']+)'|MAXVALUE)\\)");
+
+    private static final DateTimeFormatter BOUND_FORMAT = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-MM-dd HH:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .toFormatter();
+
+    @Value("${clearing.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${clearing.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public TransactionPartitionManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Runs after ddl-auto (entityManagerFactory) and before listeners or index jobs touch the tables
+    @PostConstruct
+    public void initialize() {
+        for (String table : TABLES) {
+            if (enabled && !isPartitioned(table)) {
+                transactionTemplate.executeWithoutResult(status -> convert(table));
+            }
+            if (isPartitioned(table)) {
+                transactionTemplate.executeWithoutResult(status -> guardIds(table));
+            }
+            INDEXES.get(table).forEach(jdbcTemplate::execute);
+        }
+        createPartitions();
+    }
+
+    @Scheduled(cron = "${clearing.partitioning.cron:0 0 1 * * *}")
+    public void createPartitions() {
+        YearMonth current = YearMonth.now();
+        for (String table : TABLES) {
+            // Also once conversion is switched off again, or inserts would find no partition
+            if (!isPartitioned(table)) {
+                continue;
+            }
+            List<PartitionInfo> existing = getPartitions(table);
+            for (int i = 0; i <= monthsAhead; i++) {
+                YearMonth month = current.plusMonths(i);
+                LocalDateTime from = month.atDay(1).atStartOfDay();
+                LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+                if (existing.stream().anyMatch(p -> overlaps(p, from, to))) {
+                    continue;
+                }
+                String partition = table + "_p" + month.format(DateTimeFormatter.ofPattern("yyyy_MM"));
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + table
+                        + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+                log.info("Created partition {} for [{}, {})", partition, from, to);
+            }
+        }
+    }
+
+    public List<PartitionInfo> getPartitions() {
+        List<PartitionInfo> partitions = new ArrayList<>();
+        TABLES.forEach(table -> partitions.addAll(getPartitions(table)));
+        return partitions;
+    }
+
+    /**
+     * Detaches every partition that lies entirely before the given date.
+     * Only closed months can be detached.
+     */
+    public List<PartitionInfo> detachBefore(LocalDate before) {
+        if (before.isAfter(YearMonth.now().atDay(1))) {
+            throw new IllegalArgumentException("Partitions can only be detached up to the start of the current month");
+        }
+        LocalDateTime limit = before.atStartOfDay();
+        List<PartitionInfo> detached = new ArrayList<>();
+        for (String table : TABLES) {
+            for (PartitionInfo partition : getPartitions(table)) {
+                if (partition.getTo() != null && !partition.getTo().isAfter(limit)) {
+                    jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition.getPartition());
+                    log.warn("Detached partition {} [{}, {})", partition.getPartition(), partition.getFrom(),
+                            partition.getTo());
+                    detached.add(partition);
+                }
+            }
+        }
+        return detached;
+    }
+
+    // ====== Helpers ======
+
+    private void convert(String table) {
+        jdbcTemplate.execute("LOCK TABLE " + table + " IN ACCESS EXCLUSIVE MODE");
+        // Another instance may have converted it while we waited for the lock
+        if (isPartitioned(table)) {
+            return;
+        }
+
+        String legacy = table + "_legacy";
+        List<String> indexDefinitions = jdbcTemplate.queryForList("SELECT pg_get_indexdef(indexrelid) FROM pg_index "
+                + "WHERE indrelid = ?::regclass AND NOT indisunique", String.class, table);
+        List<String> indexNames = jdbcTemplate.queryForList("SELECT c.relname FROM pg_index i "
+                + "JOIN pg_class c ON c.oid = i.indexrelid WHERE i.indrelid = ?::regclass", String.class, table);
+        LocalDateTime newest = jdbcTemplate.queryForObject("SELECT max(created_at) FROM " + table, LocalDateTime.class);
+
+        // Index names are schema-wide; free them for the parent
+        for (String name : indexNames) {
+            String renamed = (name.length() > 56 ? name.substring(0, 56) : name) + "_legacy";
+            jdbcTemplate.execute("ALTER INDEX \"" + name + "\" RENAME TO \"" + renamed + "\"");
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " RENAME TO " + legacy);
+        // Replaced by the parent's (transaction_id, created_at) key when attached
+        jdbcTemplate.queryForList("SELECT conname FROM pg_constraint WHERE conrelid = ?::regclass AND contype = 'p'",
+                String.class, legacy)
+                .forEach(name -> jdbcTemplate.execute("ALTER TABLE " + legacy + " DROP CONSTRAINT \"" + name + "\""));
+        jdbcTemplate.execute("CREATE TABLE " + table + " (LIKE " + legacy
+                + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (created_at)");
+        jdbcTemplate.execute("ALTER TABLE " + table + " ADD PRIMARY KEY (transaction_id, created_at)");
+
+        YearMonth last = newest != null && YearMonth.from(newest).isAfter(YearMonth.now())
+                ? YearMonth.from(newest) : YearMonth.now();
+        LocalDateTime bound = last.plusMonths(1).atDay(1).atStartOfDay();
+        jdbcTemplate.execute("ALTER TABLE " + table + " ATTACH PARTITION " + legacy
+                + " FOR VALUES FROM (MINVALUE) TO ('" + bound + "')");
+
+        // The definitions still name the table, which is now the partitioned parent
+        indexDefinitions.forEach(jdbcTemplate::execute);
+        log.warn("Converted {} to a partitioned table; existing rows are in {} up to {}", table, legacy, bound);
+    }
+
+    private void guardIds(String table) {
+        String ids = table + "_ids";
+        if (isGuarded(table)) {
+            return;
+        }
+        // Blocks inserts until the trigger is in place, so no id is missed by the copy
+        jdbcTemplate.execute("LOCK TABLE " + table + " IN SHARE ROW EXCLUSIVE MODE");
+        if (isGuarded(table)) {
+            return;
+        }
+        // The table may have been recreated under a leftover copy
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + ids + " (transaction_id uuid PRIMARY KEY)");
+        jdbcTemplate.execute("TRUNCATE " + ids);
+        int copied = jdbcTemplate.update("INSERT INTO " + ids + " SELECT DISTINCT transaction_id FROM " + table);
+        jdbcTemplate.execute(String.format(ID_GUARD_FUNCTION, table));
+        jdbcTemplate.execute("CREATE TRIGGER " + table + "_guard_id BEFORE INSERT ON " + table
+                + " FOR EACH ROW EXECUTE FUNCTION " + table + "_guard_id()");
+        jdbcTemplate.execute("CREATE TRIGGER " + table + "_release_id AFTER DELETE ON " + table
+                + " FOR EACH ROW EXECUTE FUNCTION " + table + "_guard_id()");
+        log.info("Guarding transaction ids of {} in {} ({} existing ids)", table, ids, copied);
+    }
+
+    private boolean isGuarded(String table) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM pg_trigger WHERE tgrelid = ?::regclass "
+                + "AND tgname = ?", Integer.class, table, table + "_guard_id") > 0;
+    }
+
+    private boolean isPartitioned(String table) {
+        List<String> kind = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, table);
+        return !kind.isEmpty() && "p".equals(kind.get(0));
+    }
+
+    private List<PartitionInfo> getPartitions(String table) {
+        return jdbcTemplate.query(LIST_PARTITIONS, (rs, i) -> {
+            PartitionInfo partition = new PartitionInfo();
+            partition.setTable(table);
+            partition.setPartition(rs.getString(1));
+            partition.setEstimatedRows(rs.getLong(3));
+            Matcher bound = RANGE_BOUND.matcher(rs.getString(2));
+            if (bound.find()) {
+                partition.setFrom(bound.group(1) != null ? LocalDateTime.parse(bound.group(1), BOUND_FORMAT) : null);
+                partition.setTo(bound.group(2) != null ? LocalDateTime.parse(bound.group(2), BOUND_FORMAT) : null);
+            }
+            return partition;
+        }, table);
+    }
+
+    // Null bounds are MINVALUE / MAXVALUE
+    private boolean overlaps(PartitionInfo partition, LocalDateTime from, LocalDateTime to) {
+        boolean startsBeforeEnd = partition.getFrom() == null || partition.getFrom().isBefore(to);
+        boolean endsAfterStart = partition.getTo() == null || partition.getTo().isAfter(from);
+        return startsBeforeEnd && endsAfterStart;
+    }
+}
@@ -13,36 +13,68 @@ import com.clearingservice.repository.OutgoingTransactionRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class TransactionService {
 
     private static final String TOPIC_FORWARDED = "transactions.forwarded";
-    private static final String TOPIC_COMPLETED = "transactions.completed";
+    static final String TOPIC_COMPLETED = "transactions.completed";
+
+    public static final String DUPLICATE = "Duplicate transaction";
+
+    private static final String COMPLETE = "UPDATE outgoing_transactions "
+            + "SET status = ?, settlement_window = ?, updated_at = now() "
+            + "WHERE transaction_id = ? AND status = 'PENDING' RETURNING from_clearing_number, to_clearing_number, amount";
 
     private final ObjectMapper objectMapper;
     private final OutgoingTransactionRepository outgoingRepo;
     private final BankMappingRepository mappingRepo;
     private final OutboxEventRepository outboxEventRepo;
+    private final ForwardTimeoutTracker timeoutTracker;
+    private final SettlementService settlementService;
+    private final ExposureTracker exposureTracker;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
 
     public TransactionService(
             ObjectMapper objectMapper,
             OutgoingTransactionRepository outgoingRepo,
             BankMappingRepository mappingRepo,
-            OutboxEventRepository outboxEventRepo) {
+            OutboxEventRepository outboxEventRepo,
+            ForwardTimeoutTracker timeoutTracker,
+            SettlementService settlementService,
+            ExposureTracker exposureTracker,
+            EntityManager entityManager,
+            JdbcTemplate jdbcTemplate) {
         this.objectMapper = objectMapper;
         this.outgoingRepo = outgoingRepo;
         this.mappingRepo = mappingRepo;
         this.outboxEventRepo = outboxEventRepo;
+        this.timeoutTracker = timeoutTracker;
+        this.settlementService = settlementService;
+        this.exposureTracker = exposureTracker;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     @Transactional
@@ -59,16 +91,58 @@ public class TransactionService {
         Optional<BankMapping> mappingOpt = mappingRepo.findByBankgoodNumber(event.getToBankgoodNumber());
 
         if (mappingOpt.isEmpty()) {
-            handleFailedRoute(event);
+            handleFailedRoute(event, "No bank-mapping found for " + event.getToBankgoodNumber());
+            return;
+        }
+        if (!exposureTracker.reserve(event.getFromClearingNumber(), event.getAmount())) {
+            handleFailedRoute(event, debitCapExceeded(event));
             return;
         }
 
         handleSuccessfulRoute(event, mappingOpt.get());
     }
 
+    /**
+     * Routes a chunk of transactions in one database transaction, resolving
+     * every destination with a single bank-mapping lookup.
+     *
+     * @return the transactions that were not forwarded, with the reason
+     */
     @Transactional
-    private void handleFailedRoute(OutgoingTransactionEvent event) {
-        log.warn("No bank-mapping found for {}", event.getToBankgoodNumber());
+    public Map<UUID, String> handleOutgoingBatch(List<OutgoingTransactionEvent> events) {
+        Map<UUID, String> notForwarded = new LinkedHashMap<>();
+
+        Set<UUID> existing = new HashSet<>(outgoingRepo.findExistingIds(
+                events.stream().map(OutgoingTransactionEvent::getTransactionId).collect(Collectors.toList())));
+        Map<String, BankMapping> mappings = mappingRepo.findByBankgoodNumberIn(
+                events.stream().map(OutgoingTransactionEvent::getToBankgoodNumber).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(BankMapping::getBankgoodNumber, Function.identity()));
+
+        for (OutgoingTransactionEvent event : events) {
+            if (!existing.add(event.getTransactionId())) {
+                notForwarded.put(event.getTransactionId(), DUPLICATE);
+                continue;
+            }
+            BankMapping mapping = mappings.get(event.getToBankgoodNumber());
+            if (mapping == null) {
+                String reason = "No bank-mapping found for " + event.getToBankgoodNumber();
+                handleFailedRoute(event, reason);
+                notForwarded.put(event.getTransactionId(), reason);
+            } else if (!exposureTracker.reserve(event.getFromClearingNumber(), event.getAmount())) {
+                String reason = debitCapExceeded(event);
+                handleFailedRoute(event, reason);
+                notForwarded.put(event.getTransactionId(), reason);
+            } else {
+                handleSuccessfulRoute(event, mapping);
+            }
+        }
+        return notForwarded;
+    }
+
+    @Transactional
+    private void handleFailedRoute(OutgoingTransactionEvent event, String reason) {
+        log.warn("Rejecting transaction {}: {}", event.getTransactionId(), reason);
 
         // Save the outgoing transaction with FAILED status
         OutgoingTransaction outgoing = new OutgoingTransaction(
@@ -76,17 +150,20 @@ public class TransactionService {
                 event.getFromClearingNumber(),
                 event.getFromAccountNumber(),
                 event.getToBankgoodNumber(),
+                null,
                 event.getAmount(),
                 TransactionStatus.FAILED,
                 event.getCreatedAt(),
-                event.getUpdatedAt());
-        outgoingRepo.save(outgoing);
+                event.getUpdatedAt(),
+                null);
+        // persist, not save: the id is assigned, so save() would merge and SELECT the row first
+        entityManager.persist(outgoing);
 
         // Send failure response back to originating bank
         TransactionResponseEvent failedResponse = new TransactionResponseEvent();
         failedResponse.setTransactionId(event.getTransactionId());
         failedResponse.setStatus(TransactionStatus.FAILED);
-        failedResponse.setMessage("No bank-mapping found for " + event.getToBankgoodNumber());
+        failedResponse.setMessage(reason);
 
         saveOutboxEvent(
                 event.getTransactionId(),
@@ -94,7 +171,7 @@ public class TransactionService {
                 failedResponse,
                 event.getFromClearingNumber());
 
-        log.info("Rejected transaction {} - no routing available", event.getTransactionId());
+        log.info("Rejected transaction {} - not routed", event.getTransactionId());
     }
 
     @Transactional
@@ -107,11 +184,13 @@ public class TransactionService {
                 event.getFromClearingNumber(),
                 event.getFromAccountNumber(),
                 event.getToBankgoodNumber(),
+                mapping.getClearingNumber(),
                 event.getAmount(),
                 TransactionStatus.PENDING,
                 event.getCreatedAt(),
-                event.getUpdatedAt());
-        outgoingRepo.save(outgoing);
+                event.getUpdatedAt(),
+                null);
+        entityManager.persist(outgoing);
 
         // Create incoming event for destination bank
         IncomingTransactionEvent incomingEvent = new IncomingTransactionEvent();
@@ -127,6 +206,7 @@ public class TransactionService {
                 TOPIC_FORWARDED,
                 incomingEvent,
                 mapping.getClearingNumber());
+        timeoutTracker.track(event.getTransactionId());
 
         log.info("Forwarded transaction {}", event.getTransactionId());
     }
@@ -134,39 +214,36 @@ public class TransactionService {
     /**
      * CONSUMER: transactions.processed
      * Bank B skickar response → Clearing-service
+     *
+     * Only the first response moves the transaction out of PENDING and is
+     * passed on; redeliveries, and responses after a forward timeout, are
+     * dropped instead of emitting a second transactions.completed.
+     * A successful payment stays on the sending bank's exposure until its
+     * settlement cycle closes; any other outcome releases it here.
      */
     @Transactional
     public void handleProcessedTransaction(TransactionResponseEvent event) {
-
-        // Idempotency check
-        Optional<OutgoingTransaction> existing = outgoingRepo.findById(event.getTransactionId());
-        if (!existing.isPresent()) {
+        boolean settled = event.getStatus() == TransactionStatus.SUCCESS && settlementService.isEnabled();
+        // The row records the window the payment is netted in, so a restart rebuilds the same window
+        LocalDateTime settlementWindow = settled ? settlementService.join() : null;
+        List<Completed> completed = jdbcTemplate.query(COMPLETE,
+                (rs, i) -> new Completed(rs.getString(1), rs.getString(2), rs.getBigDecimal(3)),
+                event.getStatus().name(), settlementWindow, event.getTransactionId());
+        if (completed.isEmpty()) {
+            log.info("Transaction {} not found or already completed, skipping", event.getTransactionId());
             return;
         }
 
-        OutgoingTransaction transaction = existing.get();
-        transaction.setStatus(event.getStatus());
-        outgoingRepo.save(transaction);
-
-        saveOutboxEvent(event.getTransactionId(), TOPIC_COMPLETED, event, transaction.getFromClearingNumber());
-        // try {
-
-        // String payload = objectMapper.writeValueAsString(event);
-        // OutboxEvent outboxEvent = new OutboxEvent(
-        // event.getTransactionId(),
-        // TOPIC_COMPLETED,
-        // transaction.getFromClearingNumber(),
-        // payload);
-        // outboxEventRepo.save(outboxEvent);
-        // log.info("Sent response for ID: {}", event.getTransactionId());
-
-        // } catch (JsonProcessingException e) {
-        // log.error("Failed to serialize event to JSON for transaction {}",
-        // event.getTransactionId(), e);
-        // throw new RuntimeException("Failed to process transaction", e);
-        // }
+        Completed tx = completed.get(0);
+        if (settled) {
+            settlementService.record(tx.fromClearingNumber(), tx.toClearingNumber(), tx.amount());
+        } else {
+            exposureTracker.release(tx.fromClearingNumber(), tx.amount());
+        }
+        saveOutboxEvent(event.getTransactionId(), TOPIC_COMPLETED, event, tx.fromClearingNumber());
     }
 
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getOutgoingTransactionById(UUID transactionId) {
         return outgoingRepo.findByTransactionId(transactionId)
                 .map(ResponseEntity::ok)
@@ -183,4 +260,11 @@ public class TransactionService {
             throw new RuntimeException("Failed to process outbox event", e);
         }
     }
+
+    private static String debitCapExceeded(OutgoingTransactionEvent event) {
+        return "Debit cap exceeded for bank " + event.getFromClearingNumber();
+    }
+
+    private record Completed(String fromClearingNumber, String toClearingNumber, BigDecimal amount) {
+    }
 }